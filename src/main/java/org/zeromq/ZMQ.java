@@ -21,6 +21,7 @@ package org.zeromq;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -39,6 +40,13 @@ public class ZMQ
      */
     public static final int SNDMORE = zmq.ZMQ.ZMQ_SNDMORE;
 
+    /**
+     * Socket flag to send a message ahead of the ones already queued for the same peer.
+     * Such messages overtake the queue on the sending side, and on the receiving side as
+     * well over inproc. The flag has to be set on the first part of a message.
+     */
+    public static final int SNDPRIO = zmq.ZMQ.ZMQ_SNDPRIO;
+
     // Values for flags in Socket's send and recv functions.
     /**
      * Socket flag to indicate a nonblocking send or recv mode.
@@ -312,6 +320,46 @@ public class ZMQ
             return ctx.set(zmq.ZMQ.ZMQ_BLOCKY, block ? 1 : 0);
         }
 
+        /**
+         * The maximum number of free message buffers kept per size class
+         * for the messages received over the network.
+         */
+        public int getMsgPoolSize()
+        {
+            return ctx.get(zmq.ZMQ.ZMQ_MSG_POOL_SIZE);
+        }
+
+        /**
+         * Sets the maximum number of free message buffers kept per size class
+         * for the messages received over the network. The buffers are given
+         * back once the payload has been copied out by the receive methods.
+         * Zero, the default, disables the pool.
+         */
+        public boolean setMsgPoolSize(int poolSize)
+        {
+            return ctx.set(zmq.ZMQ.ZMQ_MSG_POOL_SIZE, poolSize);
+        }
+
+        /**
+         * The time in microseconds the I/O threads spin for events after activity.
+         */
+        public int getIOBusyPoll()
+        {
+            return ctx.get(zmq.ZMQ.ZMQ_IO_BUSY_POLL_US);
+        }
+
+        /**
+         * Makes the I/O threads check for events without blocking for up to the specified
+         * time after handling some, before blocking again. This saves waking them up when
+         * packets come in quick succession, at the cost of a busy processor. It applies to
+         * the I/O threads started with the first socket, so set it before creating sockets.
+         * Zero, the default, blocks straight away.
+         */
+        public boolean setIOBusyPoll(int micros)
+        {
+            return ctx.set(zmq.ZMQ.ZMQ_IO_BUSY_POLL_US, micros);
+        }
+
         /**
          * This is an explicit "destructor". It can be called to ensure the corresponding 0MQ
          * Context has been disposed of.
@@ -566,6 +614,52 @@ public class ZMQ
             setsockopt(zmq.ZMQ.ZMQ_RCVHWM, (int) value);
         }
 
+        /**
+         * @see #setSndHWMBytes(long)
+         *
+         * @return the SndHWM in bytes.
+         */
+        public final long getSndHWMBytes()
+        {
+            return (Long) base.getsockoptx(zmq.ZMQ.ZMQ_SNDHWM_BYTES);
+        }
+
+        /**
+         * The 'ZMQ_SNDHWM_BYTES' option shall set a limit on the number of bytes of outstanding
+         * outbound messages 0MQ shall queue in memory for any single peer. It applies on top of the
+         * limit in messages: the socket reaches its high water mark as soon as either is reached.
+         * The limit is checked between messages, so a queue can exceed it by one message.
+         *
+         * @param value the number of bytes to queue, 0 (the default) for no limit.
+         */
+        public final void setSndHWMBytes(long value)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_SNDHWM_BYTES, value);
+        }
+
+        /**
+         * @see #setRcvHWMBytes(long)
+         *
+         * @return the recvHWM in bytes.
+         */
+        public final long getRcvHWMBytes()
+        {
+            return (Long) base.getsockoptx(zmq.ZMQ.ZMQ_RCVHWM_BYTES);
+        }
+
+        /**
+         * The 'ZMQ_RCVHWM_BYTES' option shall set a limit on the number of bytes of outstanding
+         * inbound messages 0MQ shall queue in memory for any single peer. It applies on top of the
+         * limit in messages: the socket reaches its high water mark as soon as either is reached.
+         * The limit is checked between messages, so a queue can exceed it by one message.
+         *
+         * @param value the number of bytes to queue, 0 (the default) for no limit.
+         */
+        public final void setRcvHWMBytes(long value)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_RCVHWM_BYTES, value);
+        }
+
         /**
          * @see #setHWM(long)
          *
@@ -599,28 +693,65 @@ public class ZMQ
         /**
          * @see #setSwap(long)
          *
-         * @return the number of messages to swap at most.
+         * @return the disk quota per peer in bytes.
          */
-        @Deprecated
         public final long getSwap()
         {
-            // not support at zeromq 3
-            return -1L;
+            return (Long) base.getsockoptx(zmq.ZMQ.ZMQ_SWAP);
         }
 
         /**
-         * Get the Swap. The 'ZMQ_SWAP' option shall set the disk offload (swap) size for the
-         * specified 'socket'. A socket which has 'ZMQ_SWAP' set to a non-zero value may exceed its
-         * high water mark; in this case outstanding messages shall be offloaded to storage on disk
-         * rather than held in memory.
+         * The 'ZMQ_SWAP' option shall make the socket spill outbound messages to disk instead of
+         * dropping them or blocking once the high water mark of a peer is reached. Spilled messages
+         * are appended to memory-mapped files in the temporary directory and handed to the peer in
+         * order as it catches up, whenever the socket processes its commands: on any send, receive,
+         * poll or events query. The value is the number of bytes that may be spilled for any single
+         * peer; when it is exhausted the high water mark applies as usual. It is checked between
+         * messages, so a peer can exceed it by one message. Messages still on disk when the socket
+         * is closed are queued to the peer like any other pending message, subject to the linger.
+         * Only connections made after the option is set are affected.
          *
-         * @param value
-         *            The value of 'ZMQ_SWAP' defines the maximum size of the swap space in bytes.
+         * @param bytes the disk quota per peer in bytes, 0 (the default) not to spill.
          */
-        @Deprecated
-        public final void setSwap(long value)
+        public final void setSwap(long bytes)
         {
-            throw new UnsupportedOperationException();
+            setsockopt(zmq.ZMQ.ZMQ_SWAP, bytes);
+        }
+
+        /**
+         * @see #setSendTimeToLive(int)
+         *
+         * @return the time to live of the messages sent, in milliseconds.
+         */
+        public final int getSendTimeToLive()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_SNDTTL);
+        }
+
+        /**
+         * The 'ZMQ_SNDTTL' option shall set how long messages sent on the socket may stay queued.
+         * The time counts from the send call. A message still queued by then, in the socket, in
+         * a session waiting for its peer to reconnect or in the receiving socket over inproc, is
+         * dropped instead of being delivered or written to the network. Messages already received
+         * over the network are not affected, as the time to live is not carried on the wire.
+         * See {@link #getExpiredCount()} for the number of messages dropped.
+         *
+         * @param ttl the time to live in milliseconds, 0 (the default) for no limit.
+         */
+        public final void setSendTimeToLive(int ttl)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_SNDTTL, ttl);
+        }
+
+        /**
+         * The 'ZMQ_EXPIRED' option shall retrieve the number of messages dropped so far because
+         * their time to live ran out while they were queued to or from the socket.
+         *
+         * @return the number of messages dropped as expired.
+         */
+        public final long getExpiredCount()
+        {
+            return (Long) base.getsockoptx(zmq.ZMQ.ZMQ_EXPIRED);
         }
 
         /**
@@ -979,6 +1110,66 @@ public class ZMQ
             return base.getSocketOpt(zmq.ZMQ.ZMQ_RCVMORE) == 1;
         }
 
+        /**
+         * @see #setReceiveChunkSize(int)
+         *
+         * @return the maximum size of the chunks received frames are split into.
+         */
+        public final int getReceiveChunkSize()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_RCVCHUNK);
+        }
+
+        /**
+         * The 'ZMQ_RCVCHUNK' option shall make the socket deliver frames received over the network
+         * larger than the specified size as a sequence of messages of at most that size, so that
+         * very large frames never have to be held in memory as a whole. Each chunk is returned by
+         * a separate receive call and {@link #hasReceiveChunk()} tells whether more chunks of the
+         * same frame follow. 'ZMQ_RCVMORE' is only meaningful on the last chunk of a frame.
+         * The maximum message size still applies to the whole frame.
+         * Only PAIR, PULL and DEALER sockets support this option, and only connections made
+         * after the option is set are affected.
+         *
+         * @param size the maximum chunk size in bytes, 0 (the default) to receive frames whole.
+         */
+        public final void setReceiveChunkSize(int size)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_RCVCHUNK, size);
+        }
+
+        /**
+         * @see #setBusyPoll(int)
+         *
+         * @return the time in microseconds blocking calls spin before blocking.
+         */
+        public final int getBusyPoll()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_BUSY_POLL_US);
+        }
+
+        /**
+         * The 'ZMQ_BUSY_POLL_US' option shall make blocking send and receive calls spin for up to
+         * the specified time, yielding the processor in between, waiting for the message or for
+         * room to send before putting the thread to sleep. This trades CPU for the latency of
+         * waking a sleeping thread up when traffic comes in bursts after quiet periods.
+         *
+         * @param micros the time to spin in microseconds, 0 (the default) to block straight away.
+         */
+        public final void setBusyPoll(int micros)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_BUSY_POLL_US, micros);
+        }
+
+        /**
+         * @see #setReceiveChunkSize(int)
+         *
+         * @return true if the last message received is a chunk of a frame with more chunks to follow.
+         */
+        public final boolean hasReceiveChunk()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_RCVCHUNKMORE) == 1;
+        }
+
         /**
          * The 'ZMQ_FD' option shall retrieve file descriptor associated with the 0MQ
          * socket. The descriptor can be used to integrate 0MQ socket into an existing
@@ -1156,6 +1347,57 @@ public class ZMQ
             setsockopt(zmq.ZMQ.ZMQ_DELAY_ATTACH_ON_CONNECT, value ? 1 : 0);
         }
 
+        /**
+         * @see #setDirectRecv(boolean)
+         *
+         * @return true if received messages are stored in direct buffers.
+         */
+        public boolean getDirectRecv()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_DIRECT_RECV) == 1;
+        }
+
+        /**
+         * Decode messages received over the network into direct buffers.
+         *
+         * Messages then stay off the heap from the network read to {@link #recvByteBuffer(ByteBuffer, int)}
+         * into a direct buffer. Receiving them as byte arrays costs an extra copy instead.
+         * Only applies to connections made after the option is set.
+         *
+         * @param value The value of 'ZMQ_DIRECT_RECV'. Default false.
+         */
+        public void setDirectRecv(boolean value)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_DIRECT_RECV, value ? 1 : 0);
+        }
+
+        /**
+         * @see #setSliceRecv(boolean)
+         *
+         * @return true if small received messages are slices of the receive batch.
+         */
+        public boolean getSliceRecv()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_SLICE_RECV) == 1;
+        }
+
+        /**
+         * Hand out small messages received over the network as slices of the buffer they were
+         * read in, rather than copying each one into a buffer of its own.
+         *
+         * Receive buffers are taken from the message pool of the context (see
+         * {@link Context#setMsgPoolSize(int)}) and go back to it once all their messages have been
+         * received. This saves an allocation and a copy per message for streams of small messages.
+         * The buffers of these messages are read-only. Has no effect while the message pool is
+         * disabled. Only applies to connections made after the option is set.
+         *
+         * @param value The value of 'ZMQ_SLICE_RECV'. Default false.
+         */
+        public void setSliceRecv(boolean value)
+        {
+            setsockopt(zmq.ZMQ.ZMQ_SLICE_RECV, value ? 1 : 0);
+        }
+
         /**
          * Bind to network interface. Start listening for new connections.
          *
@@ -1320,6 +1562,38 @@ public class ZMQ
             return false;
         }
 
+        /**
+         * Send several messages at once.
+         *
+         * Pending commands are processed once for the whole batch and each
+         * peer is woken up once at the end, instead of once per message.
+         * Every array element is sent as a separate message; with SNDMORE
+         * in flags the last one is followed by more parts. With SNDPRIO they
+         * all go ahead of the messages already queued.
+         *
+         * @param data the message payloads
+         * @param count the number of messages to send from data
+         * @param flags the flags to apply to the send operation
+         * @return the number of messages sent, -1 on error
+         */
+        public final int sendBatch(byte[][] data, int count, int flags)
+        {
+            zmq.Msg[] msgs = new zmq.Msg[count];
+            for (int i = 0; i < count; i++) {
+                msgs[i] = new zmq.Msg(data[i]);
+            }
+            return sendBatch(msgs, count, flags);
+        }
+
+        final int sendBatch(zmq.Msg[] msgs, int count, int flags)
+        {
+            int rc = base.sendBatch(msgs, count, flags);
+            if (rc < count) {
+                mayRaise();
+            }
+            return rc;
+        }
+
         /**
          * Send a message
          *
@@ -1337,6 +1611,31 @@ public class ZMQ
             mayRaise();
             return -1;
         }
+
+        /**
+         * Send a region of a file as the body of a message.
+         *
+         * The region is not read into memory; the I/O thread transfers it
+         * straight from the file to the network. The socket takes ownership
+         * of the channel, which is closed once the region has been sent or
+         * dropped, and also when the send fails.
+         *
+         * @param channel the file to send from
+         * @param position the offset of the region in the file
+         * @param length the length of the region, at most Integer.MAX_VALUE
+         * @param flags the flags to apply to the send operation
+         * @return true if send was successful, false otherwise
+         */
+        public final boolean sendFile(FileChannel channel, long position, long length, int flags)
+        {
+            if (zmq.ZMQ.sendFile(base, channel, position, length, flags) >= 0) {
+                return true;
+            }
+
+            mayRaise();
+            return false;
+        }
+
         /**
          * Receive a message.
          *
@@ -1356,19 +1655,47 @@ public class ZMQ
          */
         public final byte[] recv(int flags)
         {
-            zmq.Msg msg = base.recv(flags);
+            byte[] data = base.recvBytes(flags);
 
-            if (msg != null) {
-                return msg.data();
+            if (data != null) {
+                return data;
             }
 
             mayRaise();
             return null;
         }
 
+        /**
+         * Receive all the messages available right away, up to max.
+         *
+         * Pending commands are checked once for the whole batch. Unless
+         * DONTWAIT is set, the call waits for the first message like recv does.
+         *
+         * @param out the array to store the messages in, as arrays of bytes
+         * @param max the maximum number of messages to receive
+         * @param flags the flags to apply to the receive operation
+         * @return the number of messages received, -1 on error
+         */
+        public final int recvBatch(byte[][] out, int max, int flags)
+        {
+            if (max > out.length) {
+                throw new IllegalArgumentException("max " + max + " exceeds " + out.length);
+            }
+            int count = base.recvBatch(out, max, flags);
+            if (count < 0) {
+                mayRaise();
+                return -1;
+            }
+            return count;
+        }
+
         /**
          * Receive a message in to a specified buffer.
          *
+         * The message is copied straight into the buffer and never handed out, so with a
+         * message pool set on the context (see {@link Context#setMsgPoolSize(int)}) a steady
+         * stream of messages is received without allocating anything.
+         *
          * @param buffer
          *            byte[] to copy zmq message payload in to.
          * @param offset
@@ -1383,29 +1710,24 @@ public class ZMQ
          */
         public final int recv(byte[] buffer, int offset, int len, int flags)
         {
-            zmq.Msg msg = base.recv(flags);
-
-            if (msg != null) {
-                return msg.getBytes(0, buffer, offset, len);
-            }
-
-            return -1;
+            return base.recv(buffer, offset, len, flags);
         }
 
         /**
          * Receive a message into the specified ByteBuffer
          *
+         * Like {@link #recv(byte[], int, int, int)} this does not allocate when the context
+         * pools its messages.
+         *
          * @param buffer the buffer to copy the zmq message payload into
          * @param flags the flags to apply to the receive operation
          * @return the number of bytes read, -1 on error
          */
         public final int recvByteBuffer(ByteBuffer buffer, int flags)
         {
-            zmq.Msg msg = base.recv(flags);
-
-            if (msg != null) {
-                buffer.put(msg.data());
-                return msg.size();
+            int size = base.recv(buffer, flags);
+            if (size >= 0) {
+                return size;
             }
 
             mayRaise();
@@ -1449,6 +1771,80 @@ public class ZMQ
             return base.monitor(addr, events);
         }
 
+        /**
+         * Moves the connection of this socket that transferred the most data off the
+         * busiest I/O thread it uses, to the I/O thread that was the least busy lately.
+         * Nothing moves unless the former was noticeably busier and also serves other
+         * connections. Messages are neither lost nor reordered by the move.
+         *
+         * @return true if a connection is being moved.
+         */
+        public final boolean rebalance()
+        {
+            return base.rebalance();
+        }
+
+        /**
+         * Receives notifications about the messages queued to each peer of a socket,
+         * to slow down ahead of time rather than when sending blocks or fails.
+         */
+        public interface WatermarkListener
+        {
+            /**
+             * Called when the messages queued to a peer reach the high threshold.
+             *
+             * @param socket the socket sending to the peer.
+             * @param peer an object identifying the peer for as long as it is connected.
+             * @param queued the number of messages queued to the peer.
+             */
+            void highWatermark(Socket socket, Object peer, long queued);
+
+            /**
+             * Called when the messages queued to a peer drop back to the low threshold,
+             * after having reached the high one.
+             *
+             * @param socket the socket sending to the peer.
+             * @param peer an object identifying the peer for as long as it is connected.
+             * @param queued the number of messages queued to the peer.
+             */
+            void lowWatermark(Socket socket, Object peer, long queued);
+        }
+
+        /**
+         * Sets the listener notified when the messages queued to a peer reach the high
+         * threshold, then again when they drop back to the low one. The listener is called
+         * by the thread using the socket, from within its send or receive calls, and must
+         * not block. When no listener is set, sending costs nothing more.
+         *
+         * Peers report their progress as the flow control does, so the low threshold is
+         * noticed with some delay, and never if the high water mark is unlimited.
+         *
+         * @param listener the listener, or null to stop the notifications.
+         * @param high the number of messages queued for the high notification, above 0.
+         * @param low the number of messages queued for the low notification, below high.
+         */
+        public final void setWatermarkListener(final WatermarkListener listener, int high, int low)
+        {
+            if (listener == null) {
+                base.setWatermarkListener(null, high, low);
+                return;
+            }
+            base.setWatermarkListener(new zmq.IWatermarkListener()
+            {
+                @Override
+                public void highWatermark(Object peer, long queued)
+                {
+                    listener.highWatermark(Socket.this, peer, queued);
+                }
+
+                @Override
+                public void lowWatermark(Object peer, long queued)
+                {
+                    listener.lowWatermark(Socket.this, peer, queued);
+                }
+            }, high, low);
+        }
+
         private void mayRaise()
         {
             int errno = base.errno();
@@ -215,6 +215,52 @@ public class ZMsg implements Iterable<ZFrame>, Deque<ZFrame>
         return ret;
     }
 
+    /**
+     * Send several messages to 0MQ socket in one batch, so that each peer is
+     * woken up once for all of them rather than once per message.
+     * Destroys the messages after sending if destroy param is set to true.
+     * @param socket
+     *              0MQ socket to send the messages on.
+     * @param msgs
+     *              messages to send, in order.
+     * @return true if all messages were sent, false otherwise
+     */
+    public static boolean sendBatch(Socket socket, Collection<ZMsg> msgs, boolean destroy)
+    {
+        if (socket == null) {
+            throw new IllegalArgumentException("socket is null");
+        }
+
+        int count = 0;
+        for (ZMsg msg : msgs) {
+            if (msg.frames == null) {
+                throw new IllegalArgumentException("destroyed message");
+            }
+            count += msg.frames.size();
+        }
+
+        zmq.Msg[] parts = new zmq.Msg[count];
+        int i = 0;
+        for (ZMsg msg : msgs) {
+            Iterator<ZFrame> it = msg.frames.iterator();
+            while (it.hasNext()) {
+                zmq.Msg part = new zmq.Msg(it.next().getData());
+                if (it.hasNext()) {
+                    part.setFlags(zmq.Msg.MORE);
+                }
+                parts[i++] = part;
+            }
+        }
+
+        boolean ret = count == 0 || socket.sendBatch(parts, count, 0) == count;
+        if (destroy) {
+            for (ZMsg msg : msgs) {
+                msg.destroy();
+            }
+        }
+        return ret;
+    }
+
     /**
      * Receives message from socket, returns ZMsg object or null if the
      * recv was interrupted. Does a blocking recv, if you want not to block then use
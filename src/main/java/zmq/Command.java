@@ -19,13 +19,21 @@
 
 package zmq;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 //  This structure defines the commands that can be sent between threads.
-class Command
+class Command extends MpscPipe.Node
 {
     //  Object to process the command.
     private final ZObject destination;
     private final Type type;
 
+    //  Set while a reusable command is in the mailbox of its destination,
+    //  null for commands sent once. A reusable command is posted again only
+    //  once processed. Until then its sender just updates the argument, so
+    //  that the requests made in the meantime coalesce into one.
+    private final AtomicBoolean pending;
+
     public enum Type {
         //  Sent to I/O thread to let it know that it should
         //  terminate itself.
@@ -44,7 +52,7 @@ class Command
         //  are messages in the pipe.
         ACTIVATE_READ,
         //  Sent by pipe reader to inform pipe writer about how many
-        //  messages it has read so far.
+        //  messages and bytes it has read so far.
         ACTIVATE_WRITE,
         //  Sent by pipe reader to writer after creating a new inpipe.
         //  The parameter is actually of type pipe_t::upipe_t, however,
@@ -68,6 +76,11 @@ class Command
         REAP,
         //  Closed socket notifies the reaper that it's already deallocated.
         REAPED,
+        //  Sent to a session to move it, and its engine, to another I/O
+        //  thread. See Migration.
+        MIGRATE,
+        //  Sent by the I/O thread a session leaves to the one it moves to.
+        MIGRATED,
         //  Sent by reaper thread to the term thread when all the sockets
         //  are successfully deallocated.
         DONE
@@ -81,10 +94,32 @@ class Command
     }
 
     public Command(ZObject destination, Type type, Object arg)
+    {
+        this(destination, type, arg, false);
+    }
+
+    public Command(ZObject destination, Type type, Object arg, boolean reusable)
     {
         this.destination = destination;
         this.type = type;
         this.arg = arg;
+        pending = reusable ? new AtomicBoolean() : null;
+    }
+
+    //  Marks a reusable command as posted. Returns false if it already was,
+    //  in which case it must not be sent again.
+    boolean post()
+    {
+        return !pending.getAndSet(true);
+    }
+
+    //  Called by the destination before it reads the argument. The atomic
+    //  swap makes the argument set before any later post visible.
+    void received()
+    {
+        if (pending != null) {
+            pending.getAndSet(false);
+        }
     }
 
     public ZObject destination()
@@ -26,6 +26,18 @@ public enum Config
     //  memory allocation by approximately 99.6%
     MESSAGE_PIPE_GRANULARITY (256),
 
+    //  Size of the first chunk of a pipe. Chunks double in size up to the
+    //  pipe granularity while the pipe is busy, so that idle pipes stay small.
+    PIPE_MIN_CHUNK (16),
+
+    //  Time in milliseconds a pipe has to go without needing a new chunk
+    //  before the chunks kept for reuse are released.
+    PIPE_SPARE_LINGER (1000),
+
+    //  Size of the files messages above the high water mark are spilled to,
+    //  if the socket is set to do so. Larger messages get a file of their own.
+    SWAP_SEGMENT (4 * 1024 * 1024),
+
     //  Commands in pipe per allocation event.
     COMMAND_PIPE_GRANULARITY (16),
 
@@ -37,6 +49,10 @@ public enum Config
     //  real-time behaviour (less latency peaks).
     INBOUND_POLL_RATE (100),
 
+    //  Maximal number of messages read from a pipe in one go by readers
+    //  draining it in batches.
+    PIPE_READ_BATCH (64),
+
     //  Maximal batching size for engines with receiving functionality.
     //  So, if there are 10 messages that fit into the batch size, all of
     //  them may be read by a single 'recv' system call, thus avoiding
@@ -52,6 +68,14 @@ public enum Config
     //  Maximal delta between high and low watermark.
     MAX_WM_DELTA (1024),
 
+    //  Period in milliseconds over which the share of time I/O threads
+    //  spend handling events is measured.
+    IO_LOAD_WINDOW (100),
+
+    //  Difference in percent of time spent handling events an I/O thread
+    //  must be busier than another for connections to move to the latter.
+    IO_REBALANCE_MARGIN (25),
+
     //  Maximum number of events the I/O thread can process in one go.
     MAX_IO_EVENTS (256),
 
@@ -109,9 +109,16 @@ public class Ctx
     //  Does context wait (possibly forever) on termination?
     private boolean blocky;
 
+    //  Time in microseconds the I/O threads spin for events after
+    //  activity before blocking.
+    private int ioBusyPoll;
+
     //  Synchronisation of access to context options.
     private final Lock optSync;
 
+    //  Pool of message buffers used by the decoders.
+    private final MsgAllocator msgAllocator;
+
     public static final int TERM_TID = 0;
     public static final int REAPER_TID = 1;
 
@@ -125,9 +132,11 @@ public class Ctx
         maxSockets = ZMQ.ZMQ_MAX_SOCKETS_DFLT;
         ioThreadCount = ZMQ.ZMQ_IO_THREADS_DFLT;
         blocky = true;
+        ioBusyPoll = 0;
         slotSync = new ReentrantLock();
         endpointsSync = new ReentrantLock();
         optSync = new ReentrantLock();
+        msgAllocator = new MsgAllocator(ZMQ.ZMQ_MSG_POOL_SIZE_DFLT);
 
         termMailbox = new Mailbox("terminater");
 
@@ -248,6 +257,20 @@ public class Ctx
                 optSync.unlock();
             }
         }
+        else
+        if (option == ZMQ.ZMQ_IO_BUSY_POLL_US && optval >= 0) {
+            optSync.lock();
+            try {
+                ioBusyPoll = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else
+        if (option == ZMQ.ZMQ_MSG_POOL_SIZE && optval >= 0) {
+            msgAllocator.setPoolSize(optval);
+        }
         else {
             return false;
         }
@@ -266,12 +289,23 @@ public class Ctx
         else if (option == ZMQ.ZMQ_BLOCKY) {
             rc = blocky ? 1 : 0;
         }
+        else if (option == ZMQ.ZMQ_IO_BUSY_POLL_US) {
+            rc = ioBusyPoll;
+        }
+        else if (option == ZMQ.ZMQ_MSG_POOL_SIZE) {
+            rc = msgAllocator.getPoolSize();
+        }
         else {
             throw new IllegalArgumentException("option = " + option);
         }
         return rc;
     }
 
+    public MsgAllocator getMsgAllocator()
+    {
+        return msgAllocator;
+    }
+
     public SocketBase createSocket(int type)
     {
         SocketBase s = null;
@@ -282,10 +316,12 @@ public class Ctx
                 //  zmq_term thread and reaper thread.
                 int mazmq;
                 int ios;
+                int busyPoll;
                 optSync.lock();
                 try {
                     mazmq = maxSockets;
                     ios = ioThreadCount;
+                    busyPoll = ioBusyPoll;
                 }
                 finally {
                     optSync.unlock();
@@ -307,6 +343,7 @@ public class Ctx
                 for (int i = 2; i != ios + 2; i++) {
                     IOThread ioThread = new IOThread(this, i);
                     //alloc_assert (io_thread);
+                    ioThread.getPoller().setBusyPoll(busyPoll);
                     ioThreads.add(ioThread);
                     slots[i] = ioThread.getMailbox();
                     ioThread.start();
@@ -397,16 +434,22 @@ public class Ctx
             return null;
         }
 
-        //  Find the I/O thread with minimum load.
+        //  Find the I/O thread that was the least busy lately, or among
+        //  equally busy ones, the one with the fewest handles to poll.
+        int minUtilization = -1;
         int minLoad = -1;
         IOThread selectedIoThread = null;
 
         for (int i = 0; i != ioThreads.size(); i++) {
             if (affinity == 0 || (affinity & (1L << i)) > 0) {
-                int load = ioThreads.get(i).getLoad();
-                if (selectedIoThread == null || load < minLoad) {
+                IOThread ioThread = ioThreads.get(i);
+                int utilization = ioThread.getUtilization();
+                int load = ioThread.getLoad();
+                if (selectedIoThread == null || utilization < minUtilization ||
+                        (utilization == minUtilization && load < minLoad)) {
+                    minUtilization = utilization;
                     minLoad = load;
-                    selectedIoThread = ioThreads.get(i);
+                    selectedIoThread = ioThread;
                 }
             }
         }
@@ -100,6 +100,7 @@ public class Dealer extends SocketBase
             if ((msg.flags() & Msg.IDENTITY) == 0) {
                 break;
             }
+            msg.release();
         }
         return msg;
     }
@@ -42,6 +42,13 @@ public class Decoder extends DecoderBase
     private final byte[] tmpbuf;
     private Msg inProgress;
     private final long maxmsgsize;
+
+    //  Bytes of the current frame not yet handed to a message, and the
+    //  flags of the frame. Until the flags are read this is the size of
+    //  the whole frame, afterwards it is non-zero only when the frame is
+    //  received in chunks.
+    private long remaining;
+    private int msgFlags;
     private IMsgSink msgSink;
 
     public Decoder(int bufsize, long maxmsgsize)
@@ -99,16 +106,13 @@ public class Decoder extends DecoderBase
                 size = (0xFF) & first;
             }
 
-            //  inProgress is initialised at this point so in theory we should
-            //  close it before calling msgInitWithSize, however, it's a 0-byte
-            //  message and thus we can treat it as uninitialised...
             if (maxmsgsize >= 0 && (long) (size - 1) > maxmsgsize) {
                 decodingError();
                 return false;
 
             }
             else {
-                inProgress = new Msg(size - 1);
+                remaining = size - 1;
             }
 
             nextStep(tmpbuf, 1, FLAGS_READY);
@@ -135,17 +139,14 @@ public class Decoder extends DecoderBase
             return false;
         }
 
-        //  Message size must fit within range of size_t data type.
-        if (payloadLength - 1 > Integer.MAX_VALUE) {
+        //  Message size must fit within range of size_t data type,
+        //  unless the frame is received in chunks.
+        if (chunkSize() == 0 && payloadLength - 1 > Integer.MAX_VALUE) {
             decodingError();
             return false;
         }
 
-        final int msgSize = (int) (payloadLength - 1);
-        //  inProgress is initialized at this point so in theory we should
-        //  close it before calling init_size, however, it's a 0-byte
-        //  message and thus we can treat it as uninitialized...
-        inProgress = new Msg(msgSize);
+        remaining = payloadLength - 1;
 
         nextStep(tmpbuf, 1, FLAGS_READY);
 
@@ -158,7 +159,16 @@ public class Decoder extends DecoderBase
 
         int first = tmpbuf[0];
 
-        inProgress.setFlags(first & Msg.MORE);
+        //  The message is allocated only now, right before its data is
+        //  read, for the decoder to be able to hand it out as a slice.
+        //  inProgress is initialised at this point so in theory we should
+        //  close it before calling msgInitWithSize, however, it's a 0-byte
+        //  message and thus we can treat it as uninitialised...
+        inProgress = allocateChunk(remaining);
+        remaining -= inProgress.size();
+
+        msgFlags = first & Msg.MORE;
+        setChunkFlags();
 
         nextStep(inProgress,
                 MESSAGE_READY);
@@ -181,8 +191,29 @@ public class Decoder extends DecoderBase
             return false;
         }
 
+        //  Go on with the next chunk of the frame, if any.
+        if (remaining > 0) {
+            inProgress = allocateChunk(remaining);
+            remaining -= inProgress.size();
+            setChunkFlags();
+            nextStep(inProgress, MESSAGE_READY);
+            return true;
+        }
+
         nextStep(tmpbuf, 1, ONE_BYTE_SIZE_READY);
 
         return true;
     }
+
+    //  All the chunks of a frame but the last are flagged as such. The last
+    //  one carries the flags of the frame.
+    private void setChunkFlags()
+    {
+        if (remaining > 0) {
+            inProgress.setFlags(Msg.CHUNK);
+        }
+        else {
+            inProgress.setFlags(msgFlags);
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package zmq;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //  Helper base class for decoders that know the amount of data to read
 //  in advance at any moment. Knowing the amount in advance is a property
@@ -36,6 +37,7 @@ public abstract class DecoderBase implements IDecoder
 {
     //  Where to store the read data.
     private byte[] readBuf;
+    private ByteBuffer readBuffer;
     private int readPos;
 
     //  How much data to read before taking next step.
@@ -49,6 +51,30 @@ public abstract class DecoderBase implements IDecoder
 
     boolean zeroCopy;
 
+    //  Where to borrow message buffers from, if anywhere.
+    private MsgAllocator allocator;
+
+    //  If true, messages are decoded into direct buffers.
+    private boolean direct;
+
+    //  Maximum size of the messages a frame is split into, 0 to deliver
+    //  every frame as a single message.
+    private int chunkSize;
+
+    //  If true, messages lying whole in the batch they were read in are
+    //  handed out as slices of it rather than copied out of it.
+    private boolean slice;
+
+    //  Batch buffer data is read into in slice mode, and the number of its
+    //  holders: the decoder itself and the slices handed out.
+    private ByteBuffer batch;
+    private AtomicInteger batchRefs;
+
+    //  Batch being processed and the end of its data, null outside of
+    //  processBuffer.
+    private ByteBuffer current;
+    private int currentEnd;
+
     public DecoderBase(int bufsize)
     {
         state = -1;
@@ -76,8 +102,17 @@ public abstract class DecoderBase implements IDecoder
         ByteBuffer b;
         if (toRead >= bufsize) {
             zeroCopy = true;
-            b = ByteBuffer.wrap(readBuf);
-            b.position(readPos);
+            if (readBuffer != null) {
+                b = readBuffer();
+            }
+            else {
+                b = ByteBuffer.wrap(readBuf, readPos, toRead);
+            }
+        }
+        else
+        if (slicing()) {
+            zeroCopy = false;
+            b = nextBatch();
         }
         else {
             zeroCopy = false;
@@ -87,11 +122,49 @@ public abstract class DecoderBase implements IDecoder
         return b;
     }
 
+    //  Batches are only worth it when they come from the pool and go back
+    //  to it; otherwise every read with a slice still in use would allocate
+    //  a new direct buffer, so the data is copied out as usual.
+    private boolean slicing()
+    {
+        return slice && allocator != null && allocator.getPoolSize() > 0;
+    }
+
+    //  Returns the batch to read into. The current one is reused unless
+    //  some of its slices are still in use, in which case it is left to
+    //  them and a new one is started.
+    private ByteBuffer nextBatch()
+    {
+        if (batch != null && batchRefs.get() > 1) {
+            if (batchRefs.decrementAndGet() == 0 && allocator != null) {
+                allocator.release(batch);
+            }
+            batch = null;
+        }
+        if (batch == null) {
+            batch = allocator.allocateBatch(bufsize);
+            batchRefs = new AtomicInteger(1);
+        }
+        batch.clear();
+        return batch;
+    }
+
     //  Processes the data in the buffer previously allocated using
     //  get_buffer function. size_ argument specifies nemuber of bytes
     //  actually filled into the buffer. Function returns number of
     //  bytes actually processed.
     public int processBuffer(ByteBuffer buf, int size)
+    {
+        if (slice && buf == batch) {
+            current = buf;
+            currentEnd = buf.position() + size;
+        }
+        int processed = decode(buf, size);
+        current = null;
+        return processed;
+    }
+
+    private int decode(ByteBuffer buf, int size)
     {
         //  Check if we had an error in previous attempt.
         if (state() < 0) {
@@ -116,7 +189,9 @@ public abstract class DecoderBase implements IDecoder
             return size;
         }
 
-        int pos = 0;
+        //  Progress is tracked by the position of the buffer, as slices
+        //  skip over the data without copying it.
+        int start = buf.position();
         while (true) {
             //  Try to get more space in the message to fill in.
             //  If none is available, return.
@@ -126,32 +201,131 @@ public abstract class DecoderBase implements IDecoder
                         return -1;
                     }
 
-                    return pos;
+                    return buf.position() - start;
                 }
             }
 
             //  If there are no more data in the buffer, return.
+            int pos = buf.position() - start;
             if (pos == size) {
                 return pos;
             }
 
             //  Copy the data from buffer to the message.
             int toCopy = Math.min(toRead, size - pos);
-            buf.get(readBuf, readPos, toCopy);
+            if (readBuffer != null) {
+                int limit = buf.limit();
+                buf.limit(buf.position() + toCopy);
+                readBuffer().put(buf);
+                buf.limit(limit);
+            }
+            else {
+                buf.get(readBuf, readPos, toCopy);
+            }
             readPos += toCopy;
-            pos += toCopy;
             toRead -= toCopy;
         }
     }
 
+    public void setMsgAllocator(MsgAllocator allocator)
+    {
+        this.allocator = allocator;
+    }
+
+    public void setDirect(boolean direct)
+    {
+        this.direct = direct;
+    }
+
+    public void setChunkSize(int chunkSize)
+    {
+        this.chunkSize = chunkSize;
+    }
+
+    protected int chunkSize()
+    {
+        return chunkSize;
+    }
+
+    public void setSlice(boolean slice)
+    {
+        this.slice = slice;
+    }
+
+    //  Allocates the next message of a frame of which remaining bytes are
+    //  still to be read. Unless chunking is enabled this is the whole frame.
+    protected Msg allocateChunk(long remaining)
+    {
+        if (chunkSize > 0 && remaining > chunkSize) {
+            return allocate(chunkSize);
+        }
+        return allocate((int) remaining);
+    }
+
+    //  Allocates a message to be filled by the decoder. In slice mode, a
+    //  message lying whole in the rest of the batch is a read-only slice of
+    //  it. It must then be allocated right before its data is to be read.
+    protected Msg allocate(int size)
+    {
+        if (current != null && size > 0 && size <= currentEnd - current.position()) {
+            //  Adjust the batch in place rather than duplicating it. The
+            //  slice is read-only as its bytes are shared with the batch.
+            int limit = current.limit();
+            current.limit(current.position() + size);
+            ByteBuffer slice = current.asReadOnlyBuffer().slice();
+            current.limit(limit);
+            batchRefs.incrementAndGet();
+            return new Msg(slice, batch, batchRefs, allocator);
+        }
+        if (direct) {
+            if (allocator == null) {
+                return new Msg(ByteBuffer.allocateDirect(size));
+            }
+            return allocator.allocateDirect(size);
+        }
+        if (allocator == null) {
+            return new Msg(size);
+        }
+        return allocator.allocate(size);
+    }
+
+    //  Returns the direct buffer being filled, positioned at the current
+    //  read position and limited to the remaining data.
+    private ByteBuffer readBuffer()
+    {
+        readBuffer.limit(readPos + toRead);
+        readBuffer.position(readPos);
+        return readBuffer;
+    }
+
     protected void nextStep(Msg msg, int state)
     {
-        nextStep(msg.data(), msg.size(), state);
+        if (current != null && msg.parent() == batch) {
+            //  Slice of the batch, its data is already there.
+            current.position(current.position() + msg.size());
+            readBuf = null;
+            readBuffer = null;
+            readPos = 0;
+            this.toRead = 0;
+            this.state = state;
+        }
+        else
+        if (msg.array() == null) {
+            readBuf = null;
+            readBuffer = msg.buf();
+            readPos = 0;
+            this.toRead = msg.size();
+            this.state = state;
+        }
+        else {
+            nextStep(msg.array(), msg.size(), state);
+        }
     }
 
     protected void nextStep(byte[] buf, int toRead, int state)
     {
         readBuf = buf;
+        readBuffer = null;
         readPos = 0;
         this.toRead = toRead;
         this.state = state;
@@ -168,12 +168,25 @@ class Dist
     {
         //  If there are no matching pipes available, simply drop the message.
         if (matching == 0) {
+            msg.release();
             return;
         }
 
-        for (int i = 0; i < matching; ++i) {
-            if (!write(pipes.get(i), msg)) {
-                --i; //  Retry last write because index will have been swapped
+        //  A reference counted payload must be released by each pipe, so all
+        //  the pipes but the last get a view sharing it. Any other message
+        //  is written as is to all the pipes.
+        boolean counted = msg.isRefCounted();
+        int i = 0;
+        while (i < matching) {
+            Msg out = counted && i < matching - 1 ? msg.share() : msg;
+            if (write(pipes.get(i), out)) {
+                ++i;
+            }
+            else
+            if (counted) {
+                //  Drop the reference that was not written. The write is
+                //  retried at the same index, as the pipes have been swapped.
+                out.release();
             }
         }
     }
@@ -26,9 +26,14 @@ public abstract class EncoderBase implements IEncoder
 {
     //  Where to get the data to write from.
     private byte[] writeBuf;
+    private ByteBuffer writeBuffer;
     private FileChannel writeChannel;
+    private long writeChannelPos;
     private int writePos;
 
+    //  File message being written, released once the region is sent.
+    private Msg writeMsg;
+
     //  Next step. If set to -1, it means that associated data stream
     //  is dead.
     private int next;
@@ -85,8 +90,16 @@ public abstract class EncoderBase implements IEncoder
 
             if (writeChannel != null) {
                 buffer.flip();
-                Transfer t = new Transfer.FileChannelTransfer(buffer, writeChannel,
-                                                    (long) writePos, (long) toWrite);
+                Transfer t;
+                if (writeMsg != null) {
+                    t = new Transfer.FileChannelTransfer(buffer, writeMsg);
+                    writeMsg = null;
+                }
+                else {
+                    t = new Transfer.FileChannelTransfer(buffer, writeChannel,
+                                                    writeChannelPos, (long) toWrite);
+                }
+                writeChannel = null;
                 writePos = 0;
                 toWrite = 0;
 
@@ -104,8 +117,13 @@ public abstract class EncoderBase implements IEncoder
             //  amounts of time.
             if (this.buffer.position() == 0 && toWrite >= bufferSize) {
                 Transfer t;
-                ByteBuffer b = ByteBuffer.wrap(writeBuf);
-                b.position(writePos);
+                ByteBuffer b;
+                if (writeBuffer != null) {
+                    b = writeBuffer;
+                }
+                else {
+                    b = ByteBuffer.wrap(writeBuf, writePos, toWrite);
+                }
                 t = new Transfer.ByteBufferTransfer(b);
                 writePos = 0;
                 toWrite = 0;
@@ -116,7 +134,16 @@ public abstract class EncoderBase implements IEncoder
             //  Copy data to the buffer. If the buffer is full, return.
             int toCopy = Math.min(toWrite, buffer.remaining());
             if (toCopy > 0) {
-                buffer.put(writeBuf, writePos, toCopy);
+                if (writeBuffer != null) {
+                    //  Copy between buffers, the data never reaches the heap.
+                    int limit = writeBuffer.limit();
+                    writeBuffer.limit(writeBuffer.position() + toCopy);
+                    buffer.put(writeBuffer);
+                    writeBuffer.limit(limit);
+                }
+                else {
+                    buffer.put(writeBuf, writePos, toCopy);
+                }
                 writePos += toCopy;
                 toWrite -= toCopy;
             }
@@ -132,6 +159,17 @@ public abstract class EncoderBase implements IEncoder
         return toWrite > 0;
     }
 
+    //  Releases the file message the encoder is about to write, if any.
+    public void release()
+    {
+        if (writeMsg != null) {
+            writeMsg.release();
+            writeMsg = null;
+        }
+        writeChannel = null;
+        toWrite = 0;
+    }
+
     protected int state()
     {
         return next;
@@ -159,8 +197,31 @@ public abstract class EncoderBase implements IEncoder
         if (msg == null) {
             nextStep(null, 0, state, beginning);
         }
+        else
+        if (msg.channel() != null && msg.size() == 0) {
+            //  Empty file region, there is nothing to transfer.
+            msg.release();
+            nextStep(null, 0, state, beginning);
+        }
+        else
+        if (msg.channel() != null) {
+            //  File region, to be transferred straight from the file.
+            nextStep(msg.channel(), msg.channelPosition(), msg.size(), state, beginning);
+            writeMsg = msg;
+        }
+        else
+        if (msg.array() == null) {
+            //  Direct buffer, write it as it is.
+            writeBuf = null;
+            writeBuffer = msg.buf();
+            writeChannel = null;
+            writePos = 0;
+            toWrite = msg.size();
+            next = state;
+            this.beginning = beginning;
+        }
         else {
-            nextStep(msg.data(), msg.size(), state, beginning);
+            nextStep(msg.array(), msg.size(), state, beginning);
         }
     }
 
@@ -168,6 +229,7 @@ public abstract class EncoderBase implements IEncoder
                             int next, boolean beginning)
     {
         writeBuf = buf;
+        writeBuffer = null;
         writeChannel = null;
         writePos = 0;
         this.toWrite = toWrite;
@@ -179,8 +241,10 @@ public abstract class EncoderBase implements IEncoder
                             int next, boolean beginning)
     {
         writeBuf = null;
+        writeBuffer = null;
         writeChannel = ch;
-        writePos = (int) pos;
+        writeChannelPos = pos;
+        writePos = 0;
         this.toWrite = (int) toWrite;
         this.next = next;
         this.beginning = beginning;
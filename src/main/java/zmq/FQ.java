@@ -41,6 +41,21 @@ class FQ
     //  there are following parts still waiting in the current pipe.
     private boolean more;
 
+    //  Pipe a frame is being received from in chunks, if any. The rest of
+    //  the frame has to be read from that pipe, however long it takes.
+    private Pipe chunked;
+
+    //  Messages read ahead from a pipe, and the pipe they come from. The
+    //  only active pipe is drained in batches; with several active pipes
+    //  messages are read one at a time to keep the queueing fair.
+    private final Msg[] batch;
+    private int batchPos;
+    private int batchCount;
+    private Pipe batchPipe;
+
+    //  True while a priority message overtakes the ones read ahead.
+    private boolean overtaking;
+
     public FQ()
     {
         active = 0;
@@ -48,6 +63,7 @@ class FQ
         more = false;
 
         pipes = new ArrayList<Pipe>();
+        batch = new Msg[Config.PIPE_READ_BATCH.getValue()];
     }
 
     public void attach(Pipe pipe)
@@ -71,6 +87,20 @@ class FQ
             }
         }
         pipes.remove(pipe);
+        if (pipe == chunked) {
+            chunked = null;
+        }
+
+        //  Messages still in a terminated pipe are dropped, and so are the
+        //  ones read ahead from it.
+        if (pipe == batchPipe) {
+            while (batchPos < batchCount) {
+                batch[batchPos].release();
+                batch[batchPos++] = null;
+            }
+            batchPipe = null;
+            overtaking = false;
+        }
     }
 
     public void activated(Pipe pipe)
@@ -87,25 +117,52 @@ class FQ
 
     public Msg recvPipe(ValueReference<Integer> errno, ValueReference<Pipe> pipe)
     {
+        //  Messages already read ahead come first, unless a priority message
+        //  is waiting in their pipe, which then goes before them as a whole.
+        if (batchPos < batchCount) {
+            if (!more || overtaking) {
+                Msg msg = batchPipe.readPrio();
+                if (msg != null) {
+                    overtaking = msg.hasMore();
+                    return fetched(msg, batchPipe, pipe);
+                }
+            }
+            Msg msg = batch[batchPos];
+            batch[batchPos++] = null;
+            return fetched(msg, batchPipe, pipe);
+        }
+
+        if (chunked != null && !selectChunked()) {
+            errno.set(ZError.EAGAIN);
+            return null;
+        }
+
         //  Round-robin over the pipes to get the next message.
         while (active > 0) {
             //  Try to fetch new message. If we've already read part of the message
             //  subsequent part should be immediately available.
-            Msg msg = pipes.get(current).read();
+            Pipe p = pipes.get(current);
+            Msg msg;
+            if (active == 1) {
+                batchCount = p.readBatch(batch, batch.length);
+                batchPos = 0;
+                batchPipe = p;
+                msg = null;
+                if (batchCount > 0) {
+                    msg = batch[0];
+                    batch[batchPos++] = null;
+                }
+            }
+            else {
+                msg = p.read();
+            }
             boolean fetched = msg != null;
 
             //  Note that when message is not fetched, current pipe is deactivated
             //  and replaced by another active pipe. Thus we don't have to increase
             //  the 'current' pointer.
             if (fetched) {
-                if (pipe != null) {
-                    pipe.set(pipes.get(current));
-                }
-                more = msg.hasMore();
-                if (!more) {
-                    current = (current + 1) % active;
-                }
-                return msg;
+                return fetched(msg, p, pipe);
             }
 
             //  Check the atomicity of the message.
@@ -118,6 +175,11 @@ class FQ
             if (current == active) {
                 current = 0;
             }
+
+            //  Chunks of a frame are not atomic, wait for the next one.
+            if (chunked != null) {
+                break;
+            }
         }
 
         //  No message is available. Initialise the output parameter
@@ -126,6 +188,20 @@ class FQ
         return null;
     }
 
+    //  Updates the state of the queue with a message fetched from a pipe.
+    private Msg fetched(Msg msg, Pipe from, ValueReference<Pipe> pipe)
+    {
+        if (pipe != null) {
+            pipe.set(from);
+        }
+        more = msg.hasMore();
+        chunked = msg.isChunk() ? from : null;
+        if (!more && chunked == null && active > 0) {
+            current = (current + 1) % active;
+        }
+        return msg;
+    }
+
     public boolean hasIn()
     {
         //  There are subsequent parts of the partly-read message available.
@@ -133,6 +209,27 @@ class FQ
             return true;
         }
 
+        //  There are messages read ahead.
+        if (batchPos < batchCount) {
+            return true;
+        }
+
+        //  The next message has to be the next chunk of the current frame.
+        if (chunked != null) {
+            if (!selectChunked()) {
+                return false;
+            }
+            if (chunked.checkRead()) {
+                return true;
+            }
+            active--;
+            Utils.swap(pipes, current, active);
+            if (current == active) {
+                current = 0;
+            }
+            return false;
+        }
+
         //  Note that messing with current doesn't break the fairness of fair
         //  queueing algorithm. If there are no messages available current will
         //  get back to its original value. Otherwise it'll point to the first
@@ -152,4 +249,19 @@ class FQ
 
         return false;
     }
+
+    //  Points current at the pipe a frame is being received from in
+    //  chunks. Returns false if the pipe is not active.
+    private boolean selectChunked()
+    {
+        if (current < active && pipes.get(current) == chunked) {
+            return true;
+        }
+        int index = pipes.indexOf(chunked);
+        if (index >= active) {
+            return false;
+        }
+        current = index;
+        return true;
+    }
 }
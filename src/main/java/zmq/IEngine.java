@@ -36,4 +36,11 @@ public interface IEngine
     //  This method is called by the session to signalise that there
     //  are messages to send available.
     void activateOut();
+
+    //  Stop polling from the current I/O thread, as the session moves to
+    //  another one. The engine stays attached to the session.
+    void suspend();
+
+    //  Resume polling from the I/O thread the session moved to.
+    void resume(IOThread ioThread);
 }
@@ -20,6 +20,9 @@
 package zmq;
 
 import java.nio.channels.SelectableChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 //  Simple base class for objects that live in I/O threads.
 //  It makes communication with the poller object easier and
@@ -30,6 +33,10 @@ public class IOObject implements IPollEvents
     private Poller poller;
     private IPollEvents handler;
 
+    //  Handles of the timers running, to cancel them by their ID. Objects
+    //  have few timers at a time, if any.
+    private final List<TimerWheel.Timer> timers = new ArrayList<TimerWheel.Timer>(1);
+
     public IOObject(IOThread ioThread)
     {
         if (ioThread != null) {
@@ -59,46 +66,52 @@ public class IOObject implements IPollEvents
         handler = null;
     }
 
-    public final void addHandle(SelectableChannel handle)
+    public final Poller.Handle addHandle(SelectableChannel fd)
     {
-        poller.addHandle(handle, this);
+        return poller.addHandle(fd, this);
     }
 
-    public final void removeHandle(SelectableChannel handle)
+    public final void removeHandle(Poller.Handle handle)
     {
         poller.removeHandle(handle);
     }
 
-    public final void setPollIn(SelectableChannel handle)
+    public final void setPollIn(Poller.Handle handle)
     {
         poller.setPollIn(handle);
     }
 
-    public final void setPollOut(SelectableChannel handle)
+    public final void setPollOut(Poller.Handle handle)
     {
         poller.setPollOut(handle);
     }
 
-    public final void setPollConnect(SelectableChannel handle)
+    public final void setPollConnect(Poller.Handle handle)
     {
         poller.setPollConnect(handle);
     }
 
-    public final void setPollAccept(SelectableChannel handle)
+    public final void setPollAccept(Poller.Handle handle)
     {
         poller.setPollAccept(handle);
     }
 
-    public final void resetPollIn(SelectableChannel handle)
+    public final void resetPollIn(Poller.Handle handle)
     {
-        poller.resetPollOn(handle);
+        poller.resetPollIn(handle);
     }
 
-    public final void resetPollOut(SelectableChannel handle)
+    public final void resetPollOut(Poller.Handle handle)
     {
         poller.resetPollOut(handle);
     }
 
+    //  Accounts bytes read or written to the work of the I/O thread.
+    public final void countBytes(int count)
+    {
+        poller.countBytes(count);
+    }
+
     @Override
     public final void inEvent()
     {
@@ -126,12 +139,18 @@ public class IOObject implements IPollEvents
     @Override
     public final void timerEvent(int id)
     {
+        Iterator<TimerWheel.Timer> it = timers.iterator();
+        while (it.hasNext()) {
+            if (!it.next().isPending()) {
+                it.remove();
+            }
+        }
         handler.timerEvent(id);
     }
 
     public final void addTimer(long timeout, int id)
     {
-        poller.addTimer(timeout, this, id);
+        timers.add(poller.addTimer(timeout, this, id));
     }
 
     public final void setHandler(IPollEvents handler)
@@ -141,6 +160,17 @@ public class IOObject implements IPollEvents
 
     public void cancelTimer(int id)
     {
-        poller.cancelTimer(this, id);
+        Iterator<TimerWheel.Timer> it = timers.iterator();
+        while (it.hasNext()) {
+            TimerWheel.Timer timer = it.next();
+            if (timer.id() == id && timer.isPending()) {
+                poller.cancelTimer(timer);
+                it.remove();
+                return;
+            }
+        }
+
+        //  Timer not found.
+        assert (false);
     }
 }
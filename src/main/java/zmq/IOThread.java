@@ -21,7 +21,6 @@ package zmq;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.channels.SelectableChannel;
 
 public class IOThread extends ZObject implements IPollEvents, Closeable
 {
@@ -29,7 +28,7 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
     private final Mailbox mailbox;
 
     //  Handle associated with mailbox' file descriptor.
-    private final SelectableChannel mailboxHandle;
+    private final Poller.Handle mailboxHandle;
 
     //  I/O multiplexing is performed using a poller object.
     private final Poller poller;
@@ -43,8 +42,7 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
         poller = new Poller(name);
 
         mailbox = new Mailbox(name);
-        mailboxHandle = mailbox.getFd();
-        poller.addHandle(mailboxHandle, this);
+        mailboxHandle = poller.addHandle(mailbox.getFd(), this);
         poller.setPollIn(mailboxHandle);
     }
 
@@ -75,6 +73,13 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
         return poller.getLoad();
     }
 
+    //  Returns the percentage of time the thread spent handling events
+    //  lately. See Poller for the other measures of its work.
+    public int getUtilization()
+    {
+        return poller.getUtilization();
+    }
+
     @Override
     public void inEvent()
     {
@@ -88,9 +93,16 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
                 break;
             }
 
+            //  Commands of a session moved to another thread are relayed
+            //  to it, see Migration.
+            ZObject destination = cmd.destination();
+            if (destination.migration != null && !destination.migration.admit(this, cmd)) {
+                continue;
+            }
+
             //  Process the command.
 
-            cmd.destination().processCommand(cmd);
+            destination.processCommand(cmd);
         }
     }
 
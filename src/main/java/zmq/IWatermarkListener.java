@@ -0,0 +1,35 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Notified when the number of messages queued on a pipe towards a peer
+//  crosses the thresholds given to SocketBase.setWatermarkListener. The
+//  peer is identified by an opaque object for as long as it is connected.
+//  Calls are made by the thread using the socket, from within its send
+//  calls or when it processes commands, and must not block.
+public interface IWatermarkListener
+{
+    //  Called when the messages queued reach the high threshold.
+    void highWatermark(Object peer, long queued);
+
+    //  Called when the messages queued drop back to the low threshold,
+    //  after having reached the high one.
+    void lowWatermark(Object peer, long queued);
+}
@@ -93,7 +93,7 @@ public class LB
             more = msg.hasMore();
             dropping = more;
 
-            // msg_.close();
+            msg.release();
             return true;
         }
 
@@ -22,24 +22,17 @@ package zmq;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class Mailbox
         implements Closeable
 {
-    //  The pipe to store actual commands.
-    private final YPipe<Command> cpipe;
+    //  The pipe to store actual commands. It is safe for any number of
+    //  sending threads.
+    private final MpscPipe<Command> cpipe;
 
     //  Signaler to pass signals from writer thread to reader thread.
     private final Signaler signaler;
 
-    //  There's only one thread receiving from the mailbox, but there
-    //  is arbitrary number of threads sending. Given that ypipe requires
-    //  synchronised access on both of its endpoints, we have to synchronise
-    //  the sending side.
-    private final Lock sync;
-
     //  True if the underlying pipe is active, ie. when we are allowed to
     //  read commands from it.
     private boolean active;
@@ -49,8 +42,7 @@ public class Mailbox
 
     public Mailbox(String name)
     {
-        cpipe = new YPipe<Command>(Config.COMMAND_PIPE_GRANULARITY.getValue());
-        sync = new ReentrantLock();
+        cpipe = new MpscPipe<Command>();
         signaler = new Signaler();
 
         //  Get the pipe into passive state. That way, if the users starts by
@@ -71,22 +63,19 @@ public class Mailbox
 
     public void send(final Command cmd)
     {
-        boolean ok = false;
-        sync.lock();
-        try {
-            cpipe.write(cmd, false);
-            ok = cpipe.flush();
-        }
-        finally {
-            sync.unlock();
-        }
-
-        if (!ok) {
+        if (!cpipe.write(cmd)) {
             signaler.send();
         }
     }
 
     public Command recv(long timeout)
+    {
+        return recv(timeout, 0);
+    }
+
+    //  Like recv(timeout), but spins for up to spin microseconds waiting
+    //  for a command before blocking.
+    public Command recv(long timeout, int spin)
     {
         Command cmd = null;
         //  Try to get the command straight away.
@@ -101,6 +90,26 @@ public class Mailbox
             signaler.recv();
         }
 
+        //  Spinning saves the cost of parking and waking the thread up when
+        //  the command is about to come anyway.
+        if (spin > 0 && timeout != 0) {
+            long start = System.nanoTime();
+            long end = start + spin * 1000L;
+            if (timeout > 0) {
+                end = Math.min(end, start + timeout * 1000000L);
+            }
+            while (!signaler.waitEvent(0) && System.nanoTime() < end) {
+                Thread.yield();
+            }
+
+            //  The time spent spinning counts towards the timeout, which
+            //  also bounds it. If none is left, only check for a signal
+            //  without waiting.
+            if (timeout > 0) {
+                timeout = Math.max(timeout - (System.nanoTime() - start) / 1000000L, 0);
+            }
+        }
+
         //  Wait for signal from the command sender.
         boolean rc = signaler.waitEvent(timeout);
         if (!rc) {
@@ -122,11 +131,8 @@ public class Mailbox
     {
         //  TODO: Retrieve and deallocate commands inside the cpipe.
 
-        // Work around problem that other threads might still be in our
-        // send() method, by waiting on the mutex before disappearing.
-        sync.lock();
-        sync.unlock();
-
+        // Other threads might still be in our send() method. The signaler
+        // ignores their signals once closed.
         signaler.close();
     }
 
@@ -0,0 +1,117 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//  Keeps the commands of a session, and of its pipes, in order once the
+//  session has been moved away from the I/O thread it was created in.
+//
+//  Commands are still sent to that thread, the home of the session, which
+//  relays them to the thread the session was last asked to move to. When
+//  asked to move, the home relays the request to the thread the session
+//  runs in, after any command relayed there before, and relays the
+//  following commands to the new thread. The session leaves once it has
+//  processed the request and tells the new thread it arrived. Commands
+//  reaching the new thread ahead of it are parked until then.
+final class Migration
+{
+    private final IOThread home;
+
+    //  Thread the home relays to. Used by the home thread only.
+    private IOThread target;
+
+    //  Thread the session runs in, null while it moves.
+    private volatile IOThread current;
+
+    //  Commands that reached the new thread ahead of the session. Used by
+    //  that thread only.
+    private final List<Command> parked;
+
+    //  Created by the home thread as the session first moves to target.
+    Migration(IOThread home, IOThread target)
+    {
+        this.home = home;
+        this.target = target;
+        current = home;
+        parked = new ArrayList<Command>();
+    }
+
+    //  Called by the I/O thread that dequeued the command. Returns true if
+    //  the thread is to process it, false if it was relayed or parked.
+    boolean admit(IOThread thread, Command cmd)
+    {
+        if (thread == home) {
+            if (cmd.type() == Command.Type.MIGRATE) {
+                IOThread to = (IOThread) cmd.arg;
+
+                //  One move at a time.
+                if (current != target || to == target) {
+                    return false;
+                }
+                IOThread from = target;
+                target = to;
+                if (from != home) {
+                    relay(from, cmd);
+                    return false;
+                }
+                return true;
+            }
+            if (target != home) {
+                relay(target, cmd);
+                return false;
+            }
+        }
+
+        if (current == thread || cmd.type() == Command.Type.MIGRATED) {
+            return true;
+        }
+        parked.add(cmd);
+        return false;
+    }
+
+    //  Called by the thread the session leaves.
+    void leave()
+    {
+        current = null;
+    }
+
+    //  Called by the thread the session arrives in, which then processes
+    //  the commands that came ahead of it.
+    void arrive(IOThread thread)
+    {
+        current = thread;
+        for (Command cmd : parked) {
+            cmd.destination().processCommand(cmd);
+        }
+        parked.clear();
+    }
+
+    IOThread current()
+    {
+        return current;
+    }
+
+    private void relay(IOThread thread, Command cmd)
+    {
+        home.getCtx().sendCommand(thread.getTid(), cmd);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+//  Lock-free pipe for any number of writer threads and a single reader
+//  thread. Items are nodes of an intrusive linked list, so that writing
+//  allocates nothing: writers swap their item in as the new tail, the
+//  reader walks from the head. A stub node stands in whenever the pipe
+//  would otherwise be left without any node.
+//
+//  An item can be in one pipe at a time only, and must be read before it
+//  is written again.
+//
+//  Like YPipe, the pipe tells the writer when the reader went asleep
+//  after finding it empty, so that the reader is woken up exactly once.
+public class MpscPipe<T extends MpscPipe.Node>
+{
+    //  Base class of the items.
+    public static class Node
+    {
+        private volatile Node next;
+    }
+
+    private final Node stub;
+
+    //  Last node written. Shared by the writers.
+    private final AtomicReference<Node> tail;
+
+    //  Next node to read. Used by the reader only.
+    private Node head;
+
+    //  Set by the reader when it finds the pipe empty. The first writer to
+    //  clear it takes the responsibility of waking the reader up.
+    private final AtomicBoolean asleep;
+
+    public MpscPipe()
+    {
+        stub = new Node();
+        head = stub;
+        tail = new AtomicReference<Node>(stub);
+        asleep = new AtomicBoolean(false);
+    }
+
+    //  Writes an item to the pipe. Returns false if the reader thread
+    //  is sleeping. In that case, caller is obliged to wake the reader
+    //  up before using the pipe again.
+    public boolean write(final T value)
+    {
+        push(value);
+        return !(asleep.get() && asleep.compareAndSet(true, false));
+    }
+
+    private void push(Node node)
+    {
+        node.next = null;
+        Node prev = tail.getAndSet(node);
+        prev.next = node;
+    }
+
+    //  Reads an item from the pipe. Returns null if there is none, in
+    //  which case the reader is considered asleep until woken up.
+    @SuppressWarnings("unchecked")
+    public T read()
+    {
+        if (!ready()) {
+            asleep.set(true);
+
+            //  A writer may have slipped in before it could see the flag.
+            //  If no writer has claimed the wake-up yet, take it back and
+            //  go on reading. Otherwise wait for the wake-up.
+            if (!ready() || !asleep.compareAndSet(true, false)) {
+                return null;
+            }
+        }
+
+        Node node = head;
+        head = node.next;
+        return (T) node;
+    }
+
+    //  Returns true if the head node can be read, ie. it is an item and
+    //  it has a successor for the head to move to. Returns false only if
+    //  the pipe is empty.
+    private boolean ready()
+    {
+        Node node = head;
+        if (node == stub) {
+            if (node.next == null && tail.get() == stub) {
+                return false;
+            }
+            node = next(node);
+            head = node;
+        }
+        if (node.next != null) {
+            return true;
+        }
+
+        //  Unless a writer is about to link the next node, the head is the
+        //  last one. Put the stub behind it so that it can be read.
+        if (node == tail.get()) {
+            push(stub);
+        }
+        next(node);
+        return true;
+    }
+
+    //  Returns the successor of the node, waiting for the writer that is
+    //  linking it if need be. Writers do so right after swapping the tail.
+    private Node next(Node node)
+    {
+        Node next = node.next;
+        while (next == null) {
+            Thread.yield();
+            next = node.next;
+        }
+        return next;
+    }
+}
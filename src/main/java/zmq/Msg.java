@@ -19,8 +19,13 @@
 
 package zmq;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Msg
 {
@@ -31,6 +36,8 @@ public class Msg
 
     public static final int MORE = 1;
     public static final int COMMAND = 2;
+    public static final int CHUNK = 4;
+    public static final int PRIORITY = 8;
     public static final int IDENTITY = 64;
     public static final int SHARED = 128;
 
@@ -41,6 +48,26 @@ public class Msg
     private byte[] data;
     private ByteBuffer buf;
 
+    //  Allocator the backing array was borrowed from, null if not pooled.
+    private MsgAllocator allocator;
+
+    //  Number of messages sharing a pooled payload, null if not shared.
+    private AtomicInteger refs;
+
+    //  Receive batch the payload is a slice of, null if not a slice. The
+    //  batch goes back to the allocator once all its slices are released.
+    private ByteBuffer parent;
+
+    //  File region the payload is read from, null for in-memory messages.
+    private FileChannel channel;
+    private long channelPosition;
+
+    //  Time to live in milliseconds set by the sender, 0 to use the one of
+    //  the socket, and the time the message expires at once sent, 0 if it
+    //  never does.
+    private int ttl;
+    private long expiry;
+
     public Msg()
     {
         this.type = Type.DATA;
@@ -59,6 +86,63 @@ public class Msg
         this.data = buf.array();
     }
 
+    //  Pooled message; the backing array may be larger than the message.
+    Msg(byte[] array, int size, MsgAllocator allocator)
+    {
+        this.type = Type.DATA;
+        this.flags = 0;
+        this.size = size;
+        this.data = array;
+        this.buf = ByteBuffer.wrap(array, 0, size).order(ByteOrder.BIG_ENDIAN);
+        this.allocator = allocator;
+    }
+
+    //  Pooled message backed by a direct buffer, limited to the message size.
+    Msg(ByteBuffer buffer, int size, MsgAllocator allocator)
+    {
+        this.type = Type.DATA;
+        this.flags = 0;
+        this.size = size;
+        this.data = null;
+        this.buf = buffer;
+        this.allocator = allocator;
+    }
+
+    //  Message whose payload is a region of a file. The region is not read
+    //  into memory; the engine transfers it straight from the file to the
+    //  socket. The channel is owned by the message and closed once the
+    //  message has been released.
+    public Msg(FileChannel channel, long position, int length)
+    {
+        if (channel == null) {
+            throw new IllegalArgumentException("FileChannel cannot be null");
+        }
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid file region");
+        }
+        this.type = Type.DATA;
+        this.flags = 0;
+        this.size = length;
+        this.data = null;
+        this.buf = null;
+        this.channel = channel;
+        this.channelPosition = position;
+    }
+
+    //  Read-only slice of a receive batch shared by the given number of
+    //  holders, as handed out by the decoder.
+    Msg(ByteBuffer slice, ByteBuffer parent, AtomicInteger refs, MsgAllocator allocator)
+    {
+        this.type = Type.DATA;
+        this.flags = 0;
+        this.size = slice.remaining();
+        this.data = null;
+        this.buf = slice;
+        this.parent = parent;
+        this.refs = refs;
+        this.allocator = allocator;
+    }
+
     public Msg(byte[] src)
     {
         if (src == null) {
@@ -82,7 +166,7 @@ public class Msg
         this.type = Type.DATA;
         this.flags = 0;
         this.buf = src.duplicate();
-        if (buf.hasArray()) {
+        if (buf.hasArray() && buf.arrayOffset() == 0) {
             this.data = buf.array();
         }
         else {
@@ -99,9 +183,76 @@ public class Msg
         this.type = m.type;
         this.flags = m.flags;
         this.size = m.size;
-        this.buf = m.buf != null ? m.buf.duplicate() : null;
         this.data = new byte[this.size];
-        System.arraycopy(m.data, 0, this.data, 0, m.size);
+        if (m.channel != null) {
+            m.readChannel(this.data);
+        }
+        else
+        if (m.data == null) {
+            m.buf.duplicate().get(this.data);
+        }
+        else {
+            System.arraycopy(m.data, 0, this.data, 0, m.size);
+        }
+        //  Do not share the buffer of the original, it may be pooled.
+        this.buf = ByteBuffer.wrap(this.data).order(ByteOrder.BIG_ENDIAN);
+        this.ttl = m.ttl;
+        this.expiry = m.expiry;
+    }
+
+    //  Shallow copy sharing the payload of the original.
+    private Msg(Msg m, AtomicInteger refs)
+    {
+        this.type = m.type;
+        this.flags = m.flags;
+        this.size = m.size;
+        this.data = m.data;
+        this.buf = m.buf == null ? null : m.buf.duplicate();
+        this.allocator = m.allocator;
+        this.refs = refs;
+        this.parent = m.parent;
+        this.channel = m.channel;
+        this.channelPosition = m.channelPosition;
+        this.ttl = m.ttl;
+        this.expiry = m.expiry;
+    }
+
+    //  Returns a new message sharing the payload of this one rather than
+    //  copying it. Both messages are flagged as SHARED and their payload
+    //  must be treated as read-only from then on. A pooled payload is
+    //  reference counted and goes back to its allocator only once every
+    //  sharer has been released; other payloads are left to the garbage
+    //  collector. A file region is reference counted the same way, its
+    //  channel being closed once every sharer has been released.
+    public Msg share()
+    {
+        flags |= SHARED;
+        if (isRefCounted()) {
+            if (refs == null) {
+                refs = new AtomicInteger(1);
+            }
+            refs.incrementAndGet();
+        }
+        return new Msg(this, refs);
+    }
+
+    //  True if the payload goes back to an allocator or is a file region
+    //  once released, and must then be shared rather than aliased.
+    boolean isRefCounted()
+    {
+        return allocator != null || channel != null;
+    }
+
+    public boolean isShared()
+    {
+        return (flags & SHARED) == SHARED;
+    }
+
+    //  True if the message is a chunk of a larger frame, with more chunks
+    //  of the same frame to follow.
+    public boolean isChunk()
+    {
+        return (flags & CHUNK) == CHUNK;
     }
 
     public boolean isIdentity()
@@ -134,6 +285,39 @@ public class Msg
         this.flags |= flags;
     }
 
+    //  Sets how long the message may stay queued, in milliseconds, counted
+    //  from when it is sent. Overrides the ZMQ_SNDTTL of the socket.
+    public Msg setTimeToLive(int ttl)
+    {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("ttl " + ttl);
+        }
+        this.ttl = ttl;
+        return this;
+    }
+
+    public int getTimeToLive()
+    {
+        return ttl;
+    }
+
+    long expiry()
+    {
+        return expiry;
+    }
+
+    void expireAt(long time)
+    {
+        expiry = time;
+    }
+
+    //  Returns true if the message has been queued for longer than its
+    //  time to live.
+    boolean expired()
+    {
+        return expiry != 0 && Clock.nowMS() >= expiry;
+    }
+
     public void initDelimiter()
     {
         type = Type.DELIMITER;
@@ -142,17 +326,157 @@ public class Msg
 
     public byte[] data()
     {
-        if (buf.isDirect()) {
+        if (channel != null) {
+            byte[] bytes = new byte[size];
+            readChannel(bytes);
+            return bytes;
+        }
+        if (data == null) {
             int length = buf.remaining();
             byte[] bytes = new byte[length];
             buf.duplicate().get(bytes);
             return bytes;
         }
+        if (allocator != null) {
+            //  Never let a pooled buffer escape, it is going to be reused.
+            return Arrays.copyOf(data, size);
+        }
         return data;
     }
 
+    //  Hands the payload over as an array of the exact size of the message,
+    //  which must not be used afterwards. A pooled payload is copied out
+    //  and the message goes back to the pool as a whole, so that only the
+    //  returned array is allocated. Handing the pooled array itself over
+    //  would cost more, as the pool would then allocate a new message,
+    //  array included, to replace it.
+    byte[] detach()
+    {
+        if (allocator != null && refs == null && data != null) {
+            byte[] bytes = Arrays.copyOf(data, size);
+            recycle();
+            return bytes;
+        }
+        byte[] bytes = data();
+        release();
+        return bytes;
+    }
+
+    //  Returns the raw backing array, null for direct buffers or buffers
+    //  that do not start at the beginning of their array, which are
+    //  reached through buf() instead. The array of a pooled message is
+    //  longer than the message itself.
+    byte[] array()
+    {
+        return data;
+    }
+
+    ByteBuffer parent()
+    {
+        return parent;
+    }
+
+    FileChannel channel()
+    {
+        return channel;
+    }
+
+    long channelPosition()
+    {
+        return channelPosition;
+    }
+
+    //  Reads the file region into the supplied array, for the rare paths
+    //  that need the payload in memory.
+    private void readChannel(byte[] dst)
+    {
+        ByteBuffer bb = ByteBuffer.wrap(dst, 0, size);
+        try {
+            while (bb.hasRemaining()) {
+                if (channel.read(bb, channelPosition + bb.position()) < 0) {
+                    throw new EOFException("File region is beyond the end of file");
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+    }
+
+    //  Reinitialises a message recycled by its allocator.
+    void reset(int size, MsgAllocator allocator)
+    {
+        this.type = Type.DATA;
+        this.flags = 0;
+        this.size = size;
+        this.buf.clear();
+        this.buf.limit(size);
+        this.allocator = allocator;
+    }
+
+    //  Releases a message nobody else can hold a reference to anymore. A
+    //  pooled heap message goes back to its allocator as a whole, to be
+    //  handed out again by the decoder without any allocation. Any other
+    //  message is simply released.
+    void recycle()
+    {
+        if (allocator != null && refs == null && data != null) {
+            MsgAllocator allocator = this.allocator;
+            this.allocator = null;
+            allocator.recycle(this);
+        }
+        else {
+            release();
+        }
+    }
+
+    //  Returns the buffer of a pooled message to its allocator, or closes
+    //  the channel of a file message, once no other message shares it.
+    //  This is a no-op for other messages. The message must not be used
+    //  after it has been released.
+    public void release()
+    {
+        if (channel != null) {
+            if (refs == null || refs.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    //  Nothing to be done, the region has been sent already.
+                }
+            }
+            channel = null;
+            refs = null;
+            size = 0;
+        }
+        else
+        if (allocator != null) {
+            if (refs == null || refs.decrementAndGet() == 0) {
+                if (parent != null) {
+                    allocator.release(parent);
+                }
+                else
+                if (data != null) {
+                    allocator.release(data);
+                }
+                else {
+                    allocator.release(buf);
+                }
+            }
+            allocator = null;
+            refs = null;
+            parent = null;
+            data = null;
+            buf = null;
+            size = 0;
+        }
+    }
+
     public ByteBuffer buf()
     {
+        if (channel != null) {
+            return ByteBuffer.wrap(data()).order(ByteOrder.BIG_ENDIAN);
+        }
         return buf.duplicate();
     }
 
@@ -211,10 +535,16 @@ public class Msg
     public int getBytes(int index, byte[] dst, int off, int len)
     {
         int count = Math.min(len, size);
-        if (buf.isDirect()) {
-            ByteBuffer dup = buf.duplicate();
-            dup.position(index);
-            dup.put(dst, off, count);
+        if (channel != null) {
+            System.arraycopy(data(), index, dst, off, count);
+            return count;
+        }
+        if (data == null) {
+            //  Adjust the buffer in place rather than duplicating it.
+            int position = buf.position();
+            buf.position(index);
+            buf.get(dst, off, count);
+            buf.position(position);
             return count;
         }
         System.arraycopy(data, index, dst, off, count);
@@ -225,7 +555,21 @@ public class Msg
     {
         int count = Math.min(bb.remaining(), size - index);
         count = Math.min(count, len);
-        bb.put(buf);
+        if (channel != null) {
+            bb.put(data(), index, count);
+        }
+        else
+        if (data != null) {
+            bb.put(data, index, count);
+        }
+        else {
+            //  Adjust the buffer in place rather than duplicating it.
+            int position = buf.position();
+            int limit = buf.limit();
+            buf.limit(index + count).position(index);
+            bb.put(buf);
+            buf.limit(limit).position(position);
+        }
         return count;
     }
 
@@ -0,0 +1,229 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//  Pool of message buffers shared by all the decoders of a context.
+//  Buffers are bucketed into power-of-two size classes; a message borrows
+//  the smallest buffer its payload fits in. Buffers are taken by the I/O
+//  threads and handed back by the application threads (see Msg.release),
+//  hence the lock-free queues. Heap arrays and direct buffers are pooled
+//  separately.
+//
+//  Messages that never leave the library, such as the ones received into
+//  a caller's buffer, are recycled as a whole rather than just their
+//  buffer, so that a warm pool allocates nothing at all.
+//
+//  The pool is disabled until its size is set to a positive value, in
+//  which case all messages are allocated as usual.
+
+public class MsgAllocator
+{
+    //  Smallest and largest pooled size classes, as powers of two.
+    //  Messages above the largest class are read in zero-copy mode by the
+    //  decoder and are not worth pooling.
+    private static final int MIN_CLASS = 6;
+    private static final int MAX_CLASS = 16;
+
+    //  Free buffers of a single size class.
+    private static final class Pool<T>
+    {
+        private final Queue<T> free = new ConcurrentLinkedQueue<T>();
+
+        //  Number of buffers currently held by the pool.
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        private T poll()
+        {
+            T buffer = free.poll();
+            if (buffer != null) {
+                count.decrementAndGet();
+            }
+            return buffer;
+        }
+
+        private void offer(T buffer, int max)
+        {
+            if (count.incrementAndGet() > max) {
+                count.decrementAndGet();
+                return;
+            }
+            free.offer(buffer);
+        }
+
+        private void clear()
+        {
+            while (poll() != null) {
+                continue;
+            }
+        }
+    }
+
+    private final Pool<byte[]>[] arrays;
+    private final Pool<ByteBuffer>[] buffers;
+    private final Pool<Msg>[] msgs;
+
+    //  Maximum number of free buffers of each kind retained per size class.
+    private volatile int poolSize;
+
+    public MsgAllocator(int poolSize)
+    {
+        int classes = MAX_CLASS - MIN_CLASS + 1;
+        arrays = pools(classes);
+        buffers = pools(classes);
+        msgs = pools(classes);
+        for (int i = 0; i < classes; i++) {
+            arrays[i] = new Pool<byte[]>();
+            buffers[i] = new Pool<ByteBuffer>();
+            msgs[i] = new Pool<Msg>();
+        }
+        setPoolSize(poolSize);
+    }
+
+    //  Generic arrays cannot be created, hence the cast.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Pool<T>[] pools(int count)
+    {
+        return new Pool[count];
+    }
+
+    public void setPoolSize(int poolSize)
+    {
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("poolSize = " + poolSize);
+        }
+        this.poolSize = poolSize;
+        if (poolSize == 0) {
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i].clear();
+                buffers[i].clear();
+                msgs[i].clear();
+            }
+        }
+    }
+
+    public int getPoolSize()
+    {
+        return poolSize;
+    }
+
+    //  Allocates a message of the given size, borrowing its buffer from
+    //  the pool if possible.
+    public Msg allocate(int size)
+    {
+        int idx = sizeClass(size);
+        if (idx < 0 || poolSize == 0) {
+            return new Msg(size);
+        }
+
+        Msg msg = msgs[idx].poll();
+        if (msg != null) {
+            msg.reset(size, this);
+            return msg;
+        }
+
+        byte[] array = arrays[idx].poll();
+        if (array == null) {
+            array = new byte[1 << (idx + MIN_CLASS)];
+        }
+        return new Msg(array, size, this);
+    }
+
+    //  Allocates a message of the given size backed by a direct buffer,
+    //  borrowing the buffer from the pool if possible.
+    public Msg allocateDirect(int size)
+    {
+        int idx = sizeClass(size);
+        if (idx < 0 || poolSize == 0) {
+            return new Msg(ByteBuffer.allocateDirect(size));
+        }
+
+        ByteBuffer buffer = buffers[idx].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (idx + MIN_CLASS));
+        }
+        buffer.limit(size);
+        return new Msg(buffer, size, this);
+    }
+
+    //  Allocates a direct buffer of at least the given capacity for the
+    //  decoder to read a batch of messages into, borrowing it from the
+    //  pool if possible.
+    ByteBuffer allocateBatch(int capacity)
+    {
+        int idx = sizeClass(capacity);
+        if (idx < 0 || poolSize == 0) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+
+        ByteBuffer buffer = buffers[idx].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (idx + MIN_CLASS));
+        }
+        return buffer;
+    }
+
+    //  Gives the buffer back to the pool. If the pool is already full
+    //  the buffer is simply left to the garbage collector.
+    void release(byte[] array)
+    {
+        arrays[classOf(array.length)].offer(array, poolSize);
+    }
+
+    void release(ByteBuffer buffer)
+    {
+        int idx = sizeClass(buffer.capacity());
+        if (idx < 0 || buffer.capacity() != 1 << (idx + MIN_CLASS)) {
+            //  Not allocated by the pool.
+            return;
+        }
+        buffer.clear();
+        buffers[idx].offer(buffer, poolSize);
+    }
+
+    //  Gives a whole message back to the pool, along with its buffer.
+    void recycle(Msg msg)
+    {
+        msgs[classOf(msg.array().length)].offer(msg, poolSize);
+    }
+
+    //  Returns the index of the smallest size class that holds size bytes,
+    //  or -1 if the message is not to be pooled.
+    private static int sizeClass(int size)
+    {
+        if (size == 0 || size > 1 << MAX_CLASS) {
+            return -1;
+        }
+        if (size <= 1 << MIN_CLASS) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS;
+    }
+
+    //  Returns the index of the size class of a pooled buffer.
+    private static int classOf(int capacity)
+    {
+        return Integer.numberOfTrailingZeros(capacity) - MIN_CLASS;
+    }
+}
@@ -19,6 +19,7 @@
 
 package zmq;
 
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -346,6 +347,14 @@ public class Mtrie
 
     //  Signal all the matching pipes.
     public void match(byte[] data, int size, IMtrieHandler func, Object arg)
+    {
+        match(ByteBuffer.wrap(data), size, func, arg);
+    }
+
+    //  Signal all the pipes matching the data from the start of the buffer.
+    //  The buffer is read with absolute gets so that direct buffers
+    //  are matched in place.
+    public void match(ByteBuffer data, int size, IMtrieHandler func, Object arg)
     {
         Mtrie current = this;
         int idx = 0;
@@ -368,7 +377,7 @@ public class Mtrie
                 break;
             }
 
-            byte c = data[idx];
+            byte c = data.get(idx);
             //  If there's one subnode (optimisation).
             if (current.count == 1) {
                 if (c != current.min) {
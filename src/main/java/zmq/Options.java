@@ -31,6 +31,10 @@ public class Options
     int sendHwm;
     int recvHwm;
 
+    //  High-water marks for message pipes in bytes, 0 for no limit.
+    long sendHwmBytes;
+    long recvHwmBytes;
+
     //  I/O thread affinity.
     long affinity;
 
@@ -116,10 +120,36 @@ public class Options
     Class<? extends DecoderBase> decoder;
     Class<? extends EncoderBase> encoder;
 
+    //  If 1, messages received over the network are decoded into
+    //  direct buffers rather than heap arrays.
+    int directRecv;
+
+    //  If 1, small messages received over the network are slices of the
+    //  batch they were read in rather than copies.
+    int sliceRecv;
+
+    //  Maximum size of the messages received frames are split into,
+    //  0 to receive every frame as a single message.
+    int recvChunk;
+
+    //  Time in microseconds a blocking send or recv spins waiting for
+    //  commands before parking the thread, 0 to park straight away.
+    int busyPoll;
+
+    //  Maximum number of bytes of outbound messages above the high water
+    //  mark spilled to disk for any single peer, 0 to not spill.
+    long swap;
+
+    //  Time in milliseconds messages sent may stay queued before they are
+    //  dropped, 0 for no limit.
+    int sendTtl;
+
     public Options()
     {
         sendHwm = 1000;
         recvHwm = 1000;
+        sendHwmBytes = 0;
+        recvHwmBytes = 0;
         affinity = 0;
         identitySize = 0;
         rate = 100;
@@ -151,6 +181,12 @@ public class Options
         tcpAcceptFilters = new ArrayList<TcpAddress.TcpAddressMask>();
         decoder = null;
         encoder = null;
+        directRecv = 0;
+        sliceRecv = 0;
+        recvChunk = 0;
+        busyPoll = 0;
+        swap = 0;
+        sendTtl = 0;
     }
 
     @SuppressWarnings("unchecked")
@@ -171,6 +207,20 @@ public class Options
             }
             return;
 
+        case ZMQ.ZMQ_SNDHWM_BYTES:
+            sendHwmBytes = (Long) optval;
+            if (sendHwmBytes < 0) {
+                throw new IllegalArgumentException("sendHwmBytes " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_RCVHWM_BYTES:
+            recvHwmBytes = (Long) optval;
+            if (recvHwmBytes < 0) {
+                throw new IllegalArgumentException("recvHwmBytes " + optval);
+            }
+            return;
+
         case ZMQ.ZMQ_AFFINITY:
             affinity = (Long) optval;
             return;
@@ -332,6 +382,59 @@ public class Options
             }
             return;
 
+        case ZMQ.ZMQ_DIRECT_RECV:
+
+            directRecv = (Integer) optval;
+            if (directRecv != 0 && directRecv != 1) {
+                throw new IllegalArgumentException("directRecv only accepts 0 or 1 " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_SLICE_RECV:
+
+            sliceRecv = (Integer) optval;
+            if (sliceRecv != 0 && sliceRecv != 1) {
+                throw new IllegalArgumentException("sliceRecv only accepts 0 or 1 " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_RCVCHUNK:
+
+            //  Only the sockets passing received messages through unchanged
+            //  can deliver frames in chunks.
+            if (type != ZMQ.ZMQ_PAIR && type != ZMQ.ZMQ_PULL && type != ZMQ.ZMQ_DEALER) {
+                throw new IllegalArgumentException("recvChunk is not supported by socket type " + type);
+            }
+            recvChunk = (Integer) optval;
+            if (recvChunk < 0) {
+                throw new IllegalArgumentException("recvChunk " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_BUSY_POLL_US:
+
+            busyPoll = (Integer) optval;
+            if (busyPoll < 0) {
+                throw new IllegalArgumentException("busyPoll " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_SWAP:
+
+            swap = (Long) optval;
+            if (swap < 0) {
+                throw new IllegalArgumentException("swap " + optval);
+            }
+            return;
+
+        case ZMQ.ZMQ_SNDTTL:
+
+            sendTtl = (Integer) optval;
+            if (sendTtl < 0) {
+                throw new IllegalArgumentException("sendTtl " + optval);
+            }
+            return;
+
         default:
             throw new IllegalArgumentException("Unknown Option " + option);
         }
@@ -346,6 +449,12 @@ public class Options
         case ZMQ.ZMQ_RCVHWM:
             return recvHwm;
 
+        case ZMQ.ZMQ_SNDHWM_BYTES:
+            return sendHwmBytes;
+
+        case ZMQ.ZMQ_RCVHWM_BYTES:
+            return recvHwmBytes;
+
         case ZMQ.ZMQ_AFFINITY:
             return affinity;
 
@@ -409,6 +518,24 @@ public class Options
         case ZMQ.ZMQ_LAST_ENDPOINT:
             return lastEndpoint;
 
+        case ZMQ.ZMQ_DIRECT_RECV:
+            return directRecv;
+
+        case ZMQ.ZMQ_SLICE_RECV:
+            return sliceRecv;
+
+        case ZMQ.ZMQ_RCVCHUNK:
+            return recvChunk;
+
+        case ZMQ.ZMQ_BUSY_POLL_US:
+            return busyPoll;
+
+        case ZMQ.ZMQ_SWAP:
+            return swap;
+
+        case ZMQ.ZMQ_SNDTTL:
+            return sendTtl;
+
         default:
             throw new IllegalArgumentException("option=" + option);
         }
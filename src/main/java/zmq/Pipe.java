@@ -19,6 +19,11 @@
 
 package zmq;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 //  Note that pipe can be stored in three different arrays.
 //  The array of inbound pipes (1), the array of outbound pipes (2) and
 //  the generic array of pipes to deallocate (3).
@@ -32,9 +37,46 @@ class Pipe extends ZObject
         void pipeTerminated(Pipe pipe);
     }
 
+    //  Pipes whose flush was deferred while a socket sends a batch of
+    //  messages. Each pipe is flushed once when the batch ends.
+    static final class FlushBatch
+    {
+        private boolean active;
+        private final List<Pipe> pipes = new ArrayList<Pipe>();
+
+        void begin()
+        {
+            active = true;
+        }
+
+        void end()
+        {
+            active = false;
+            for (Pipe pipe : pipes) {
+                pipe.flushDeferred = false;
+                pipe.flush();
+            }
+            pipes.clear();
+        }
+    }
+
     //  Underlying pipes for both directions.
-    private YPipe<Msg> inpipe;
-    private YPipe<Msg> outpipe;
+    private YPipeBase<Msg> inpipe;
+    private YPipeBase<Msg> outpipe;
+
+    //  Priority lanes for both directions. The writer creates the lane with
+    //  the first priority message and hands it to the peer. Messages waiting
+    //  there are read before the ones in the regular pipe.
+    private volatile YPipeBase<Msg> inprio;
+    private YPipeBase<Msg> outprio;
+
+    //  True if the message being written, or read, goes through the
+    //  priority lane. All parts of a message go through the same lane.
+    private boolean writingPrio;
+    private boolean readingPrio;
+
+    //  True if the last message read has more parts to follow.
+    private boolean readingMore;
 
     //  Can the pipe be read from / written to?
     private boolean inActive;
@@ -46,14 +88,35 @@ class Pipe extends ZObject
     //  Low watermark for the inbound pipe.
     private int lwm;
 
+    //  High and low watermarks in bytes, 0 if there is no byte limit.
+    private long hwmBytes;
+    private long lwmBytes;
+
     //  Number of messages read and written so far.
     private long msgsRead;
     private long msgsWritten;
 
+    //  Number of bytes read and written so far.
+    private long bytesRead;
+    private long bytesWritten;
+
+    //  Number of bytes read when the peer was last told about it.
+    private long bytesReadNotified;
+
+    //  True if the last message written has more parts to follow.
+    private boolean writingMore;
+
+    //  True if a delimiter ended the last batch read. It is acted upon by
+    //  the next read, once the messages before it have been dealt with.
+    private boolean delimiterRead;
+
     //  Last received peer's msgsRead. The actual number in the peer
     //  can be higher at the moment.
     private long peersMsgsRead;
 
+    //  Last received peer's bytesRead.
+    private long peersBytesRead;
+
     //  The pipe object on the other side of the pipepair.
     private Pipe peer;
 
@@ -90,21 +153,60 @@ class Pipe extends ZObject
     // JeroMQ only
     private ZObject parent;
 
+    //  Size of the ring used for the inbound ypipe, 0 if it is a YPipe.
+    private final int inRing;
+
+    //  Commands to the peer, reused for the whole life of the pipe.
+    private Command activateReadCmd;
+    private Command activateWriteCmd;
+    private Command hiccupCmd;
+
+    //  Batch the flushes are deferred to, if any, and whether this pipe
+    //  is already waiting in it.
+    private FlushBatch batch;
+    private boolean flushDeferred;
+
+    //  Messages above the high watermark spilled to disk, null if the
+    //  pipe does not spill, and whether the message being written goes
+    //  there.
+    private Swap swap;
+    private boolean spilling;
+
+    //  Counter of the messages dropped because they expired while queued,
+    //  and whether the message being read is dropped.
+    private AtomicLong expired;
+    private boolean dropping;
+
+    //  Listener of the messages queued towards the peer, null if none, its
+    //  thresholds and whether the high one was reached last.
+    private IWatermarkListener watermarks;
+    private int highMark;
+    private int lowMark;
+    private boolean aboveMark;
+
     //  Constructor is private. Pipe can only be created using
     //  pipepair function.
-    private Pipe(ZObject parent, YPipe<Msg> inpipe, YPipe<Msg> outpipe,
-              int inhwm, int outhwm, boolean delay)
+    private Pipe(ZObject parent, YPipeBase<Msg> inpipe, YPipeBase<Msg> outpipe,
+              int inhwm, int outhwm, long inhwmBytes, long outhwmBytes, int inRing,
+              boolean delay)
     {
         super(parent);
+        this.inRing = inRing;
         this.inpipe = inpipe;
         this.outpipe = outpipe;
         inActive = true;
         outActive = true;
         hwm = outhwm;
         lwm = computeLwm(inhwm);
+        hwmBytes = outhwmBytes;
+        lwmBytes = (inhwmBytes + 1) / 2;
         msgsRead = 0;
         msgsWritten = 0;
         peersMsgsRead = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        bytesReadNotified = 0;
+        peersBytesRead = 0;
         peer = null;
         sink = null;
         state = State.ACTIVE;
@@ -116,28 +218,52 @@ class Pipe extends ZObject
     //  Create a pipepair for bi-directional transfer of messages.
     //  First HWM is for messages passed from first pipe to the second pipe.
     //  Second HWM is for messages passed from second pipe to the first pipe.
+    //  HWMs in bytes follow the same order, 0 meaning no byte limit. A
+    //  direction is full as soon as either of its limits is reached.
+    //  If both HWMs are set, the ypipes are rings bounded by them.
     //  Delay specifies how the pipe behaves when the peer terminates. If true
     //  pipe receives all the pending messages before terminating, otherwise it
     //  terminates straight away.
     public static void pipepair(ZObject[] parents, Pipe[] pipes, int[] hwms,
-            boolean[] delays)
+            long[] hwmBytes, boolean[] delays)
     {
         //   Creates two pipe objects. These objects are connected by two ypipes,
         //   each to pass messages in one direction.
 
-        YPipe<Msg> upipe1 = new YPipe<Msg>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
-        YPipe<Msg> upipe2 = new YPipe<Msg>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
+        int ring1 = 0;
+        int ring2 = 0;
+        if (hwms[0] > 0 && hwms[1] > 0) {
+            ring1 = ringSize(hwms[0]);
+            ring2 = ringSize(hwms[1]);
+        }
+        YPipeBase<Msg> upipe1 = createYPipe(ring1);
+        YPipeBase<Msg> upipe2 = createYPipe(ring2);
 
         pipes[0] = new Pipe(parents[0], upipe1, upipe2,
-            hwms[1], hwms[0], delays[0]);
+            hwms[1], hwms[0], hwmBytes[1], hwmBytes[0], ring2, delays[0]);
         pipes[1] = new Pipe(parents[1], upipe2, upipe1,
-            hwms[0], hwms[1], delays[1]);
+            hwms[0], hwms[1], hwmBytes[0], hwmBytes[1], ring1, delays[1]);
 
         pipes[0].setPeer(pipes[1]);
         pipes[1].setPeer(pipes[0]);
 
     }
 
+    //  A direction never holds more than hwm complete messages. Leave room
+    //  for the delimiter and for a partially written message.
+    private static int ringSize(int hwm)
+    {
+        return hwm + 2;
+    }
+
+    private static YPipeBase<Msg> createYPipe(int ring)
+    {
+        if (ring > 0) {
+            return new RingPipe<Msg>(ring);
+        }
+        return new YPipe<Msg>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
+    }
+
     //  Pipepair uses this function to let us know about
     //  the peer pipe object.
     private void setPeer(Pipe peer)
@@ -145,6 +271,10 @@ class Pipe extends ZObject
         //  Peer can be set once only.
         assert (peer != null);
         this.peer = peer;
+
+        activateReadCmd = new Command(peer, Command.Type.ACTIVATE_READ, null, true);
+        activateWriteCmd = new Command(peer, Command.Type.ACTIVATE_WRITE, new AtomicLongArray(2), true);
+        hiccupCmd = new Command(peer, Command.Type.HICCUP, null, true);
     }
 
     //  Specifies the object to send events to.
@@ -154,6 +284,26 @@ class Pipe extends ZObject
         this.sink = sink;
     }
 
+    //  Returns the object the other end of the pipe reports to, ie. the
+    //  session for the pipes of a socket connected over the network.
+    IPipeEvents peerSink()
+    {
+        return peer.sink;
+    }
+
+    //  Spill the messages above the high watermark to disk, up to the
+    //  given number of bytes.
+    void setSwap(long quota)
+    {
+        swap = new Swap(quota);
+    }
+
+    //  Defer flushes to the batch while it is active.
+    void setFlushBatch(FlushBatch batch)
+    {
+        this.batch = batch;
+    }
+
     //  Pipe endpoint can store an opaque ID to be used by its clients.
     public void setIdentity(Blob identity)
     {
@@ -172,6 +322,16 @@ class Pipe extends ZObject
             return false;
         }
 
+        if (prioReady()) {
+            return true;
+        }
+
+        if (delimiterRead) {
+            delimiterRead = false;
+            delimit();
+            return false;
+        }
+
         //  Check if there's an item in the pipe.
         if (!inpipe.checkRead()) {
             inActive = false;
@@ -181,6 +341,10 @@ class Pipe extends ZObject
         //  If the next item in the pipe is message delimiter,
         //  initiate termination process.
         if (isDelimiter(inpipe.probe())) {
+            //  Priority messages written before the delimiter come first.
+            if (prioReady()) {
+                return true;
+            }
             Msg msg = inpipe.read();
             assert (msg != null);
             delimit();
@@ -190,37 +354,223 @@ class Pipe extends ZObject
         return true;
     }
 
-    //  Reads a message to the underlying pipe.
+    //  Reads a message to the underlying pipe. Messages that expired while
+    //  queued are dropped.
     public Msg read()
+    {
+        while (true) {
+            boolean first = !readingMore;
+            Msg msg = readPart();
+            if (msg == null || !drop(msg, first)) {
+                return msg;
+            }
+        }
+    }
+
+    //  Reads a message part from the priority lane, or returns null if the
+    //  next part is not to be read from there. Lets priority messages
+    //  overtake the ones the reader already read ahead.
+    public Msg readPrio()
+    {
+        while (inActive && prioReady()) {
+            boolean first = !readingMore;
+            Msg msg = readPart();
+            if (msg == null || !drop(msg, first)) {
+                return msg;
+            }
+        }
+        return null;
+    }
+
+    //  Reads up to max messages at once into msgs, returning how many were
+    //  read. Flow control is the same as for reading them one by one, but
+    //  the peer is notified at most once per batch. Messages that expired
+    //  while queued are dropped.
+    public int readBatch(Msg[] msgs, int max)
+    {
+        //  Reading ahead frees room in the pipe before the messages are
+        //  consumed. With a limit in bytes, that would let the writer get
+        //  ahead by as many bytes as a whole batch holds, so messages are
+        //  then read one at a time.
+        if (lwmBytes > 0) {
+            max = 1;
+        }
+
+        while (true) {
+            boolean first = !readingMore;
+            int count = readParts(msgs, max);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                Msg msg = msgs[i];
+                msgs[i] = null;
+                if (!drop(msg, first)) {
+                    msgs[kept++] = msg;
+                }
+                first = !msg.hasMore();
+            }
+            if (count == 0 || kept > 0) {
+                return kept;
+            }
+        }
+    }
+
+    //  Returns true if the message part is to be dropped, as it belongs to
+    //  a message that expired while queued, and releases it.
+    private boolean drop(Msg msg, boolean first)
+    {
+        if (first) {
+            dropping = msg.expired();
+            if (dropping && expired != null) {
+                expired.incrementAndGet();
+            }
+        }
+        if (dropping) {
+            msg.release();
+        }
+        return dropping;
+    }
+
+    //  Counts the messages dropped as expired in the given counter.
+    void setExpiredCounter(AtomicLong expired)
+    {
+        this.expired = expired;
+    }
+
+    //  Notifies the listener when the messages queued towards the peer reach
+    //  high, then again when they drop back to low. A null listener stops
+    //  the notifications.
+    void setWatermarkListener(IWatermarkListener listener, int high, int low)
+    {
+        watermarks = listener;
+        highMark = high;
+        lowMark = low;
+        aboveMark = false;
+    }
+
+    private Msg readPart()
     {
         if (!inActive || (state != State.ACTIVE && state != State.PENDING)) {
             return null;
         }
 
-        Msg msg = inpipe.read();
+        boolean prio = prioReady();
+        if (delimiterRead && !prio) {
+            delimiterRead = false;
+            delimit();
+            return null;
+        }
+
+        Msg msg = prio ? inprio.read() : inpipe.read();
 
         if (msg == null) {
             inActive = false;
             return null;
         }
 
-        //  If delimiter was read, start termination process of the pipe.
+        //  If delimiter was read, start termination process of the pipe,
+        //  once the priority messages written before it have been read.
         if (msg.isDelimiter()) {
-            delimit();
-            return null;
+            if (!prioReady()) {
+                delimit();
+                return null;
+            }
+            delimiterRead = true;
+            prio = true;
+            msg = inprio.read();
         }
 
+        readingMore = msg.hasMore();
+        readingPrio = prio && readingMore;
+
+        boolean notify = false;
         if (!msg.hasMore()) {
             msgsRead++;
+            notify = lwm > 0 && msgsRead % lwm == 0;
         }
 
-        if (lwm > 0 && msgsRead % lwm == 0) {
-            sendActivateWrite(peer, msgsRead);
+        bytesRead += msg.size();
+        if (lwmBytes > 0 && bytesRead - bytesReadNotified >= lwmBytes) {
+            notify = true;
+        }
+
+        if (notify) {
+            bytesReadNotified = bytesRead;
+            sendActivateWrite(activateWriteCmd, msgsRead, bytesRead);
         }
 
         return msg;
     }
 
+    private int readParts(Msg[] msgs, int max)
+    {
+        if (!inActive || (state != State.ACTIVE && state != State.PENDING)) {
+            return 0;
+        }
+
+        boolean prio = prioReady();
+        if (delimiterRead && !prio) {
+            delimiterRead = false;
+            delimit();
+            return 0;
+        }
+
+        int count = prio ? inprio.read(msgs, max) : inpipe.read(msgs, max);
+        if (count == 0) {
+            inActive = false;
+            return 0;
+        }
+
+        //  Nothing follows a delimiter, so it can only end the batch.
+        if (msgs[count - 1].isDelimiter()) {
+            msgs[--count] = null;
+            delimiterRead = true;
+            if (count == 0) {
+                //  Priority messages written before the delimiter come first.
+                if (!prioReady()) {
+                    delimiterRead = false;
+                    delimit();
+                    return 0;
+                }
+                prio = true;
+                count = inprio.read(msgs, max);
+            }
+        }
+
+        readingMore = msgs[count - 1].hasMore();
+        readingPrio = prio && readingMore;
+
+        long lwms = lwm > 0 ? msgsRead / lwm : 0;
+        for (int i = 0; i < count; i++) {
+            if (!msgs[i].hasMore()) {
+                msgsRead++;
+            }
+            bytesRead += msgs[i].size();
+        }
+
+        boolean notify = lwm > 0 && msgsRead / lwm != lwms;
+        if (lwmBytes > 0 && bytesRead - bytesReadNotified >= lwmBytes) {
+            notify = true;
+        }
+
+        if (notify) {
+            bytesReadNotified = bytesRead;
+            sendActivateWrite(activateWriteCmd, msgsRead, bytesRead);
+        }
+
+        return count;
+    }
+
+    //  Returns true if the next message part is to be read from the
+    //  priority lane. A message in progress is read to its end first.
+    private boolean prioReady()
+    {
+        YPipeBase<Msg> prio = inprio;
+        if (prio == null || (readingMore && !readingPrio)) {
+            return false;
+        }
+        return prio.checkRead();
+    }
+
     //  Checks whether messages can be written to the pipe. If writing
     //  the message would cause high watermark the function returns false.
     public boolean checkWrite()
@@ -229,7 +579,18 @@ class Pipe extends ZObject
             return false;
         }
 
-        boolean full = hwm > 0 && msgsWritten - peersMsgsRead == (long) (hwm);
+        //  The rest of a message follows its first part to disk.
+        if (writingMore && spilling) {
+            return true;
+        }
+
+        boolean full = !writingMore && atHwm();
+
+        //  Messages above the watermark are spilled, and so are the ones
+        //  after them to keep the order, as long as the quota allows it.
+        if (swap != null && (full || !swap.isEmpty())) {
+            full = !swap.hasRoom();
+        }
 
         if (full) {
             outActive = false;
@@ -247,26 +608,123 @@ class Pipe extends ZObject
             return false;
         }
 
+        if (!writingMore) {
+            //  Priority messages never go to disk, as they would then wait
+            //  for the backlog.
+            writingPrio = (msg.flags() & Msg.PRIORITY) != 0;
+            spilling = !writingPrio && swap != null && (!swap.isEmpty() || atHwm());
+        }
+
         boolean more = msg.hasMore();
-        outpipe.write(msg, more);
+        writingMore = more;
+
+        if (spilling) {
+            swap.write(msg);
+            msg.release();
+
+            //  The reader may have drained the pipe while the message was
+            //  being written, in which case no activate_write is left to
+            //  bring it back.
+            if (!more && !atHwm()) {
+                unswap(false);
+            }
+            return true;
+        }
+
+        int size = msg.size();
+        lane(writingPrio).write(msg, more);
 
         if (!more) {
             msgsWritten++;
+            if (watermarks != null && !aboveMark && msgsWritten - peersMsgsRead >= highMark) {
+                aboveMark = true;
+                watermarks.highWatermark(this, msgsWritten - peersMsgsRead);
+            }
         }
+        bytesWritten += size;
 
         return true;
     }
 
+    //  Returns the pipe to write to, creating the priority lane if needed.
+    private YPipeBase<Msg> lane(boolean prio)
+    {
+        if (!prio) {
+            return outpipe;
+        }
+        if (outprio == null) {
+            outprio = createYPipe(0);
+            peer.inprio = outprio;
+
+            //  A new lane doesn't know whether the reader is asleep.
+            sendActivateRead(activateReadCmd);
+        }
+        return outprio;
+    }
+
+    //  Returns true if the pipe has reached either of its high watermarks.
+    //  The byte limit is checked at message boundaries only, like the
+    //  message limit, so the pipe may exceed it by at most one message.
+    private boolean atHwm()
+    {
+        if (hwm > 0 && msgsWritten - peersMsgsRead >= (long) (hwm)) {
+            return true;
+        }
+        return hwmBytes > 0 && bytesWritten - peersBytesRead >= hwmBytes;
+    }
+
+    //  Moves the messages spilled to disk back into the pipe, as long as it
+    //  stays below its watermarks unless all of them are asked for.
+    private void unswap(boolean all)
+    {
+        if (swap == null || outpipe == null || !swap.hasMsg()) {
+            return;
+        }
+
+        while (swap.hasMsg() && (all || !atHwm())) {
+            Msg msg = swap.read();
+            YPipeBase<Msg> lane = lane((msg.flags() & Msg.PRIORITY) != 0);
+            lane.write(msg, msg.hasMore());
+            bytesWritten += msg.size();
+            while (msg.hasMore()) {
+                msg = swap.read();
+                lane.write(msg, msg.hasMore());
+                bytesWritten += msg.size();
+            }
+            msgsWritten++;
+        }
+        flush();
+    }
+
+    //  Deletes the messages spilled to disk, if any.
+    private void closeSwap()
+    {
+        if (swap != null) {
+            swap.close();
+            swap = null;
+            spilling = false;
+        }
+    }
+
     //  Remove unfinished parts of the outbound message from the pipe.
     public void rollback()
     {
         //  Remove incomplete message from the outbound pipe.
         Msg msg;
+        if (spilling) {
+            swap.rollback();
+        }
+        else
         if (outpipe != null) {
-            while ((msg = outpipe.unwrite()) != null) {
+            YPipeBase<Msg> lane = writingPrio ? outprio : outpipe;
+            while ((msg = lane.unwrite()) != null) {
                 assert ((msg.flags() & Msg.MORE) > 0);
+                bytesWritten -= msg.size();
+                msg.release();
             }
         }
+        writingMore = false;
+        spilling = false;
     }
 
     //  Flush the messages downsteam.
@@ -277,8 +735,19 @@ class Pipe extends ZObject
             return;
         }
 
+        if (batch != null && batch.active) {
+            if (!flushDeferred) {
+                flushDeferred = true;
+                batch.pipes.add(this);
+            }
+            return;
+        }
+
+        if (outprio != null && !outprio.flush()) {
+            sendActivateRead(activateReadCmd);
+        }
         if (outpipe != null && !outpipe.flush()) {
-            sendActivateRead(peer);
+            sendActivateRead(activateReadCmd);
         }
     }
 
@@ -292,10 +761,22 @@ class Pipe extends ZObject
     }
 
     @Override
-    protected void processActivateWrite(long msgsRead)
+    protected void processActivateWrite(long msgsRead, long bytesRead)
     {
-        //  Remember the peers's message sequence number.
+        //  Remember the peers's message sequence number and byte count.
         peersMsgsRead = msgsRead;
+        peersBytesRead = bytesRead;
+
+        if (state == State.ACTIVE) {
+            unswap(false);
+        }
+
+        //  The peer catching up is only known here, so the low threshold is
+        //  checked as often as the peer reports its progress.
+        if (aboveMark && msgsWritten - peersMsgsRead <= lowMark) {
+            aboveMark = false;
+            watermarks.lowWatermark(this, msgsWritten - peersMsgsRead);
+        }
 
         if (!outActive && state == State.ACTIVE) {
             outActive = true;
@@ -311,13 +792,11 @@ class Pipe extends ZObject
         //  migrated to this thread.
         assert (outpipe != null);
         outpipe.flush();
-        while (outpipe.read() != null) {
-            // do nothing
-        }
+        release(outpipe);
 
         //  Plug in the new outpipe.
         assert (pipe != null);
-        outpipe = (YPipe<Msg>) pipe;
+        outpipe = (YPipeBase<Msg>) pipe;
         outActive = true;
 
         //  If appropriate, notify the user about the hiccup.
@@ -334,6 +813,9 @@ class Pipe extends ZObject
         //  pending messages, we can move directly to the terminating state.
         //  Otherwise we'll hang up in pending state till all the pending messages
         //  are sent.
+        //  The peer won't read the messages spilled to disk anymore.
+        closeSwap();
+
         if (state == State.ACTIVE) {
             if (!delay) {
                 state = State.TERMINATING;
@@ -375,6 +857,7 @@ class Pipe extends ZObject
         //  Notify the user that all the references to the pipe should be dropped.
         assert (sink != null);
         sink.pipeTerminated(this);
+        closeSwap();
 
         //  In terminating and double_terminated states there's nothing to do.
         //  Simply deallocate the pipe. In terminated state we have to ack the
@@ -393,8 +876,10 @@ class Pipe extends ZObject
         //  First, delete all the unread messages in the pipe. We have to do it by
         //  hand because msg_t doesn't have automatic destructor. Then deallocate
         //  the ypipe itself.
-        while (inpipe.read() != null) {
-            // do nothing
+        release(inpipe);
+        if (inprio != null) {
+            release(inprio);
+            inprio = null;
         }
 
         inpipe = null;
@@ -456,6 +941,10 @@ class Pipe extends ZObject
             //  Drop any unfinished outbound messages.
             rollback();
 
+            //  Messages spilled to disk go before the delimiter, regardless
+            //  of the watermarks, like the delimiter itself.
+            unswap(true);
+
             //  Write the delimiter into the pipe. Note that watermarks are not
             //  checked; thus the delimiter can be written even when the pipe is full.
 
@@ -464,6 +953,17 @@ class Pipe extends ZObject
             outpipe.write(msg, false);
             flush();
         }
+        closeSwap();
+    }
+
+    //  Reads all the messages left in the pipe and releases them, so that
+    //  pooled buffers go back to their allocator and files get closed.
+    private static void release(YPipeBase<Msg> pipe)
+    {
+        Msg msg;
+        while ((msg = pipe.read()) != null) {
+            msg.release();
+        }
     }
 
     //  Returns true if the message is delimiter; false otherwise.
@@ -534,11 +1034,17 @@ class Pipe extends ZObject
         inpipe = null;
 
         //  Create new inpipe.
-        inpipe = new YPipe<Msg>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
+        inpipe = createYPipe(inRing);
         inActive = true;
 
+        //  The priority lane is kept; a message being read from the old
+        //  pipe won't go on in the new one.
+        if (!readingPrio) {
+            readingMore = false;
+        }
+
         //  Notify the peer about the hiccup.
-        sendHiccup(peer, inpipe);
+        sendHiccup(hiccupCmd, inpipe);
     }
 
     @Override
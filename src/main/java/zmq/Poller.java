@@ -25,30 +25,50 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Poller extends PollerBase implements Runnable
 {
-    private static class PollSet
+    //  Token of a channel registered with the poller, handed to its handler
+    //  to change what is polled for without looking the channel up.
+    public static final class Handle
     {
-        protected IPollEvents handler;
-        protected SelectionKey key;
-        protected int ops;
-        protected boolean cancelled;
+        private final SelectableChannel fd;
+        private final IPollEvents handler;
+        private SelectionKey key;
 
-        protected PollSet(IPollEvents handler)
+        //  Events polled for, and the ones the selection key was last
+        //  told about.
+        private int ops;
+        private int applied;
+
+        //  If true, the handle is queued to get its key updated.
+        private boolean changed;
+        private boolean cancelled;
+
+        private Handle(SelectableChannel fd, IPollEvents handler)
         {
+            this.fd = fd;
             this.handler = handler;
             key = null;
-            cancelled = false;
             ops = 0;
+            applied = 0;
+            changed = false;
+            cancelled = false;
         }
     }
     //  This table stores data for registered descriptors.
-    private final Map<SelectableChannel, PollSet> fdTable;
+    private final Set<Handle> fdTable;
+
+    //  Handles whose events changed since the last wait. The keys are
+    //  updated once per loop, so that turning an event off and on again
+    //  costs nothing.
+    private final List<Handle> changes;
 
     //  If true, there's at least one retired event source.
     private final AtomicBoolean retired = new AtomicBoolean(false);
@@ -57,6 +77,10 @@ public class Poller extends PollerBase implements Runnable
     private volatile boolean stopping;
     private volatile boolean stopped;
 
+    //  Time in microseconds to spin for events after handling some,
+    //  before blocking again. Set before the poller is started.
+    private int busyPoll;
+
     private Thread worker;
     private Selector selector;
     private final String name;
@@ -72,7 +96,8 @@ public class Poller extends PollerBase implements Runnable
         stopping = false;
         stopped = false;
 
-        fdTable = new HashMap<SelectableChannel, PollSet>();
+        fdTable = new HashSet<Handle>();
+        changes = new ArrayList<Handle>();
         try {
             selector = Selector.open();
         }
@@ -99,69 +124,105 @@ public class Poller extends PollerBase implements Runnable
         }
     }
 
-    public final void addHandle(SelectableChannel fd, IPollEvents events)
+    public final Handle addHandle(SelectableChannel fd, IPollEvents events)
     {
-        fdTable.put(fd, new PollSet(events));
+        Handle handle = new Handle(fd, events);
+        fdTable.add(handle);
 
         adjustLoad(1);
+
+        return handle;
     }
 
-    public final void removeHandle(SelectableChannel handle)
+    public final void removeHandle(Handle handle)
     {
-        fdTable.get(handle).cancelled = true;
+        handle.cancelled = true;
         retired.set(true);
 
         //  Decrease the load metric of the thread.
         adjustLoad(-1);
     }
 
-    public final void setPollIn(SelectableChannel handle)
+    public final void setPollIn(Handle handle)
     {
         register(handle, SelectionKey.OP_READ, false);
     }
 
-    public final void resetPollOn(SelectableChannel handle)
+    public final void resetPollIn(Handle handle)
     {
         register(handle, SelectionKey.OP_READ, true);
     }
 
-    public final void setPollOut(SelectableChannel handle)
+    public final void setPollOut(Handle handle)
     {
         register(handle,  SelectionKey.OP_WRITE, false);
     }
 
-    public final void resetPollOut(SelectableChannel handle)
+    public final void resetPollOut(Handle handle)
     {
         register(handle, SelectionKey.OP_WRITE, true);
     }
 
-    public final void setPollConnect(SelectableChannel handle)
+    public final void setPollConnect(Handle handle)
     {
         register(handle, SelectionKey.OP_CONNECT, false);
     }
 
-    public final void setPollAccept(SelectableChannel handle)
+    public final void setPollAccept(Handle handle)
     {
         register(handle, SelectionKey.OP_ACCEPT, false);
     }
 
-    private final void register(SelectableChannel handle, int ops, boolean negate)
+    private final void register(Handle handle, int ops, boolean negate)
     {
-        PollSet pollset = fdTable.get(handle);
-
         if (negate) {
-            pollset.ops = pollset.ops & ~ops;
+            handle.ops = handle.ops & ~ops;
         }
         else {
-            pollset.ops = pollset.ops | ops;
+            handle.ops = handle.ops | ops;
         }
 
-        if (pollset.key != null) {
-            pollset.key.interestOps(pollset.ops);
+        if (!handle.changed) {
+            handle.changed = true;
+            changes.add(handle);
         }
-        else {
-            retired.set(true);
+    }
+
+    //  Tells the selection keys about the events changed since the
+    //  last wait, if they did not change back in the meantime.
+    private void update()
+    {
+        for (int i = 0, size = changes.size(); i != size; i++) {
+            Handle handle = changes.get(i);
+            handle.changed = false;
+
+            if (handle.cancelled) {
+                continue;
+            }
+            if (handle.key == null) {
+                //  Not registered yet, it will be with its current events.
+                retired.set(true);
+                continue;
+            }
+            if (handle.ops != handle.applied) {
+                try {
+                    handle.key.interestOps(handle.ops);
+                    handle.applied = handle.ops;
+                }
+                catch (CancelledKeyException e) {
+                    // channel might have been closed
+                }
+            }
         }
+        changes.clear();
+    }
+
+    //  Makes the poller spin for up to micros microseconds after handling
+    //  events, instead of blocking straight away.
+    public void setBusyPoll(int micros)
+    {
+        assert (micros >= 0);
+        busyPoll = micros;
     }
 
     public void start()
@@ -181,45 +242,71 @@ public class Poller extends PollerBase implements Runnable
     public void run()
     {
         int returnsImmediately = 0;
+        long woke = System.nanoTime();
+        long active = woke;
+        int handled = 0;
 
         while (!stopping) {
             //  Execute any due timers.
             long timeout = executeTimers();
 
+            //  Apply what the handlers asked for since the last wait.
+            update();
+
             while (retired.compareAndSet(true, false)) {
-                Iterator<Map.Entry<SelectableChannel, PollSet>> it = fdTable.entrySet().iterator();
+                Iterator<Handle> it = fdTable.iterator();
                 while (it.hasNext()) {
-                    Map.Entry<SelectableChannel, PollSet> entry = it.next();
-                    SelectableChannel ch = entry.getKey();
-                    PollSet pollset = entry.getValue();
-                    if (pollset.key == null) {
+                    Handle handle = it.next();
+                    if (handle.key == null && !handle.cancelled) {
                         try {
-                            pollset.key = ch.register(selector, pollset.ops, pollset.handler);
+                            handle.key = handle.fd.register(selector, handle.ops, handle);
+                            handle.applied = handle.ops;
                         }
                         catch (ClosedChannelException e) {
                         }
                     }
 
-                    if (pollset.cancelled || !ch.isOpen()) {
-                        if (pollset.key != null) {
-                            pollset.key.cancel();
+                    if (handle.cancelled || !handle.fd.isOpen()) {
+                        if (handle.key != null) {
+                            handle.key.cancel();
                         }
                         it.remove();
                     }
                 }
             }
 
-            //  Wait for events.
+            //  Everything since the thread woke up was spent handling events.
+            countWork(handled, woke, System.nanoTime());
+            handled = 0;
+
+            //  Wait for events. Shortly after some were handled, more are
+            //  likely to come, and checking for them without blocking saves
+            //  waking the thread up.
             int rc;
+            boolean spin = busyPoll > 0 && System.nanoTime() - active < busyPoll * 1000L;
             long start = System.currentTimeMillis();
             try {
-                rc = selector.select(timeout);
+                if (spin) {
+                    rc = selector.selectNow();
+                }
+                else {
+                    rc = selector.select(timeout);
+                }
             }
             catch (IOException e) {
                 throw new ZError.IOException(e);
             }
+            woke = System.nanoTime();
 
             if (rc == 0) {
+                //  Keep spinning while within the window. The time given up
+                //  to other threads is not spent handling events.
+                if (spin) {
+                    Thread.yield();
+                    woke = System.nanoTime();
+                    continue;
+                }
+
                 //  Guess JDK epoll bug
                 if (timeout == 0 ||
                         System.currentTimeMillis() - start < timeout / 2) {
@@ -235,13 +322,22 @@ public class Poller extends PollerBase implements Runnable
                 }
                 continue;
             }
+            active = woke;
 
             Iterator<SelectionKey> it = selector.selectedKeys().iterator();
             while (it.hasNext()) {
                 SelectionKey key = it.next();
-                IPollEvents evt = (IPollEvents) key.attachment();
+                Handle handle = (Handle) key.attachment();
                 it.remove();
 
+                //  The handle may have been removed by a previous handler,
+                //  possibly to be polled by another thread from now on.
+                if (handle.cancelled) {
+                    continue;
+                }
+                IPollEvents evt = handle.handler;
+                handled++;
+
                 try {
                     if (key.isReadable()) {
                         evt.inEvent();
@@ -284,8 +380,8 @@ public class Poller extends PollerBase implements Runnable
 
         selector = newSelector;
 
-        for (PollSet pollSet : fdTable.values()) {
-            pollSet.key = null;
+        for (Handle handle : fdTable) {
+            handle.key = null;
         }
 
         retired.set(true);
@@ -19,9 +19,6 @@
 
 package zmq;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
 
 abstract class PollerBase
@@ -30,25 +27,27 @@ abstract class PollerBase
     //  registered.
     private final AtomicInteger load;
 
-    private final class TimerInfo
-    {
-        IPollEvents sink;
-        int id;
+    //  Work done by the poller's thread since it started: events handled,
+    //  bytes transferred by the engines it polls and nanoseconds spent in
+    //  handlers. Written by that thread only.
+    private volatile long events;
+    private volatile long bytes;
+    private volatile long busy;
 
-        public TimerInfo(IPollEvents sink, int id)
-        {
-            this.sink = sink;
-            this.id = id;
-        }
-    }
-    private final Map<Long, TimerInfo> timers;
-    private final Map<Long, TimerInfo> addingTimers;
+    //  Percentage of the last load window spent in handlers, when the
+    //  current window started and the time spent in handlers since.
+    private volatile int utilization;
+    private volatile long windowStart;
+    private long windowBusy;
+
+    //  Timers of the poller.
+    private final TimerWheel timers;
 
     protected PollerBase()
     {
         load = new AtomicInteger(0);
-        timers = new MultiMap<Long, TimerInfo>();
-        addingTimers = new MultiMap<Long, TimerInfo>();
+        windowStart = System.nanoTime();
+        timers = new TimerWheel(Clock.nowMS());
     }
 
     //  Returns load of the poller. Note that this function can be
@@ -64,80 +63,80 @@ abstract class PollerBase
         load.addAndGet(amount);
     }
 
-    //  Add a timeout to expire in timeout_ milliseconds. After the
-    //  expiration timerEvent on sink_ object will be called with
-    //  argument set to id_.
-    public void addTimer(long timeout, IPollEvents sink, int id)
+    //  Called by individual poller implementations after handling the given
+    //  number of events between start and end, in nanoseconds.
+    protected void countWork(int count, long start, long end)
     {
-        long expiration = Clock.nowMS() + timeout;
-        TimerInfo info = new TimerInfo(sink, id);
-        addingTimers.put(expiration, info);
-
+        events += count;
+        busy += end - start;
+        windowBusy += end - start;
+
+        long window = Config.IO_LOAD_WINDOW.getValue() * 1000000L;
+        if (end - windowStart >= window) {
+            utilization = (int) (windowBusy * 100 / (end - windowStart));
+            windowBusy = 0;
+            windowStart = end;
+        }
     }
 
-    //  Cancel the timer created by sink_ object with ID equal to id_.
-    public void cancelTimer(IPollEvents sink, int id)
+    //  Called by engines, from the poller's thread, with the number of
+    //  bytes they read or wrote.
+    void countBytes(int count)
     {
-        //  Complexity of this operation is O(n). We assume it is rarely used.
+        bytes += count;
+    }
 
-        if (!addingTimers.isEmpty()) {
-            timers.putAll(addingTimers);
-            addingTimers.clear();
+    //  Returns the percentage of time the poller's thread spent handling
+    //  events lately. Can be invoked from a different thread. A thread
+    //  that has been waiting for two windows in a row is considered idle.
+    public final int getUtilization()
+    {
+        long window = Config.IO_LOAD_WINDOW.getValue() * 1000000L;
+        if (System.nanoTime() - windowStart >= 2 * window) {
+            return 0;
         }
+        return utilization;
+    }
 
-        Iterator<Entry<Long, TimerInfo>> it = timers.entrySet().iterator();
-        while (it.hasNext()) {
-            TimerInfo v = it.next().getValue();
-            if (v.sink == sink && v.id == id) {
-                it.remove();
-                return;
-            }
-        }
+    public final long getEvents()
+    {
+        return events;
+    }
 
-        //  Timer not found.
-        assert (false);
+    public final long getBytes()
+    {
+        return bytes;
+    }
+
+    //  Returns the time spent in handlers, in nanoseconds.
+    public final long getBusyTime()
+    {
+        return busy;
+    }
+
+    //  Add a timeout to expire in timeout_ milliseconds. After the
+    //  expiration timerEvent on sink_ object will be called with
+    //  argument set to id_. Returns the handle to cancel the timer with.
+    public TimerWheel.Timer addTimer(long timeout, IPollEvents sink, int id)
+    {
+        return timers.add(Clock.nowMS(), timeout, sink, id);
+    }
+
+    //  Cancel the timer, unless it expired already.
+    public void cancelTimer(TimerWheel.Timer timer)
+    {
+        timers.cancel(timer);
     }
 
     //  Executes any timers that are due. Returns number of milliseconds
     //  to wait to match the next timer or 0 meaning "no timers".
     protected long executeTimers()
     {
-        if (!addingTimers.isEmpty()) {
-            timers.putAll(addingTimers);
-            addingTimers.clear();
-        }
         //  Fast track.
         if (timers.isEmpty()) {
             return 0L;
         }
 
-        //  Get the current time.
-        long current = Clock.nowMS();
-
-        //   Execute the timers that are already due.
-        Iterator<Entry<Long, TimerInfo>> it = timers.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<Long, TimerInfo> o = it.next();
-            //  If we have to wait to execute the item, same will be true about
-            //  all the following items (multimap is sorted). Thus we can stop
-            //  checking the subsequent timers and return the time to wait for
-            //  the next timer (at least 1ms).
-
-            if (o.getKey() > current) {
-                return o.getKey() - current;
-            }
-
-            //  Trigger the timer.
-            o.getValue().sink.timerEvent(o.getValue().id);
-            //  Remove it from the list of active timers.
-            it.remove();
-        }
-
-        if (!addingTimers.isEmpty()) {
-            return executeTimers();
-        }
-
-        //  There are no more timers.
-        return 0L;
+        return timers.execute(Clock.nowMS());
     }
 }
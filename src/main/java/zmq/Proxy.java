@@ -78,7 +78,7 @@ public class Proxy
 
                         //  Copy message to capture socket if any
                         if (capture != null) {
-                            Msg ctrl = new Msg(msg);
+                            Msg ctrl = msg.share();
                             success = capture.send(ctrl, more > 0 ? ZMQ.ZMQ_SNDMORE : 0);
                             if (!success) {
                                 return false;
@@ -110,7 +110,7 @@ public class Proxy
 
                         //  Copy message to capture socket if any
                         if (capture != null) {
-                            Msg ctrl = new Msg(msg);
+                            Msg ctrl = msg.share();
                             success = capture.send(ctrl, more > 0 ? ZMQ.ZMQ_SNDMORE : 0);
                             if (!success) {
                                 return false;
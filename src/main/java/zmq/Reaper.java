@@ -21,7 +21,6 @@ package zmq;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.channels.SelectableChannel;
 
 public class Reaper extends ZObject implements IPollEvents, Closeable
 {
@@ -29,7 +28,7 @@ public class Reaper extends ZObject implements IPollEvents, Closeable
     private final Mailbox mailbox;
 
     //  Handle associated with mailbox' file descriptor.
-    private SelectableChannel mailboxHandle;
+    private Poller.Handle mailboxHandle;
 
     //  I/O multiplexing is performed using a poller object.
     private final Poller poller;
@@ -52,8 +51,7 @@ public class Reaper extends ZObject implements IPollEvents, Closeable
 
         mailbox = new Mailbox(name);
 
-        mailboxHandle = mailbox.getFd();
-        poller.addHandle(mailboxHandle, this);
+        mailboxHandle = poller.addHandle(mailbox.getFd(), this);
         poller.setPollIn(mailboxHandle);
     }
 
@@ -51,7 +51,7 @@ public class Req extends Dealer
         //  First part of the request is the request identity.
         if (messageBegins) {
             Msg bottom = new Msg();
-            bottom.setFlags(Msg.MORE);
+            bottom.setFlags(Msg.MORE | (msg.flags() & Msg.PRIORITY));
             boolean rc = super.xsend(bottom);
             if (!rc) {
                 return rc;
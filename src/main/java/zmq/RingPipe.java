@@ -0,0 +1,265 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//  Single-producer/single-consumer pipe backed by a ring.
+//  Used instead of YPipe when the number of items in flight is bounded
+//  in advance, e.g. by the HWMs of a message pipe. Items are addressed
+//  by ever increasing sequence numbers rather than by chunk positions.
+//
+//  Whenever the ring is full, the writer links a new, twice as large ring
+//  at the current sequence number and continues there; the reader follows
+//  the link once it gets there. The ring starts small, so that idle pipes
+//  stay small, and stops growing once it holds the bound. As a bound in
+//  messages is no bound on the number of frames, a long multi-part
+//  message may still make it grow further.
+public class RingPipe<T> implements YPipeBase<T>
+{
+    private static final class Ring
+    {
+        private final Object[] slots;
+        private final int mask;
+
+        //  Sequence number of the first item stored in this ring.
+        private final long start;
+
+        //  Sequence number from which items are stored in the next ring.
+        //  Set by the writer before the sequence is flushed.
+        private long link;
+        private Ring next;
+
+        //  Used by the writer only, to unwrite items across a link.
+        private final Ring prev;
+
+        private Ring(int capacity, long start, Ring prev)
+        {
+            slots = new Object[capacity];
+            mask = capacity - 1;
+            this.start = start;
+            this.prev = prev;
+            link = Long.MAX_VALUE;
+        }
+    }
+
+    //  Counter padded so that it does not share a cache line with the
+    //  other counter nor with the fields of neighbouring objects.
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+
+        private Sequence(long value)
+        {
+            super(value);
+        }
+    }
+
+    //  The single point of contention between writer and reader thread.
+    //  Points past the last flushed item. If it is -1, reader is asleep.
+    private final Sequence c;
+
+    //  Points past the last item read. Written by the reader only, read by
+    //  the writer to find out whether the ring has room left.
+    private final Sequence head;
+
+    //  Writer side: the ring being written to, the next sequence to write,
+    //  the first item to be flushed in the future, the first un-flushed item
+    //  and the last known value of head.
+    private Ring wring;
+    private long tail;
+    private long f;
+    private long w;
+    private long cachedHead;
+
+    //  Reader side: the ring being read from, the next sequence to read
+    //  and the first un-prefetched item.
+    private Ring rring;
+    private long h;
+    private long r;
+
+    public RingPipe(int capacity)
+    {
+        int size = 1;
+        while (size < capacity && size < Config.PIPE_MIN_CHUNK.getValue()) {
+            size <<= 1;
+        }
+        wring = new Ring(size, 0, null);
+        rring = wring;
+        c = new Sequence(0);
+        head = new Sequence(0);
+    }
+
+    @Override
+    public void write(final T value, boolean incomplete)
+    {
+        Ring ring = wring;
+
+        //  The slot is still occupied by an unread item, unless the reader
+        //  went past it in the meantime. If it did not, grow.
+        long wrapped = tail - ring.slots.length;
+        if (wrapped >= ring.start && wrapped >= cachedHead) {
+            cachedHead = head.get();
+            if (wrapped >= cachedHead) {
+                Ring next = new Ring(ring.slots.length << 1, tail, ring);
+                ring.next = next;
+                ring.link = tail;
+                ring = next;
+                wring = next;
+            }
+        }
+
+        ring.slots[(int) tail & ring.mask] = value;
+        tail++;
+
+        //  Move the "flush up to here" pointer.
+        if (!incomplete) {
+            f = tail;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T unwrite()
+    {
+        if (f == tail) {
+            return null;
+        }
+        tail--;
+
+        //  Step back over a link the reader cannot have reached yet, as
+        //  nothing at or past it was flushed.
+        Ring ring = wring;
+        if (tail < ring.start) {
+            ring = ring.prev;
+            ring.next = null;
+            ring.link = Long.MAX_VALUE;
+            wring = ring;
+        }
+
+        int index = (int) tail & ring.mask;
+        T value = (T) ring.slots[index];
+        ring.slots[index] = null;
+        return value;
+    }
+
+    @Override
+    public boolean flush()
+    {
+        //  If there are no un-flushed items, do nothing.
+        if (w == f) {
+            return true;
+        }
+
+        //  Try to set 'c' to 'f'.
+        if (!c.compareAndSet(w, f)) {
+            //  The reader is asleep, see YPipe.flush.
+            c.set(f);
+            w = f;
+            return false;
+        }
+
+        w = f;
+        return true;
+    }
+
+    @Override
+    public boolean checkRead()
+    {
+        //  Was the value prefetched already? If so, return.
+        if (h != r) {
+            return true;
+        }
+
+        //  Prefetch more values. If there are none, set c to -1 so that
+        //  the writer knows the reader is asleep. The reader may keep
+        //  polling while asleep, so never take -1 for a position.
+        if (!c.compareAndSet(h, -1)) {
+            long value = c.get();
+            if (value != -1) {
+                r = value;
+            }
+        }
+
+        return h != r;
+    }
+
+    @Override
+    public T read()
+    {
+        if (!checkRead()) {
+            return null;
+        }
+
+        T value = pop();
+        head.lazySet(h);
+        return value;
+    }
+
+    @Override
+    public int read(T[] out, int max)
+    {
+        if (!checkRead()) {
+            return 0;
+        }
+
+        //  Pop everything that was prefetched, publishing progress once.
+        int count = 0;
+        while (count < max && h != r) {
+            out[count++] = pop();
+        }
+        head.lazySet(h);
+        return count;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T probe()
+    {
+        boolean rc = checkRead();
+        assert (rc);
+
+        follow();
+        return (T) rring.slots[(int) h & rring.mask];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T pop()
+    {
+        follow();
+        Ring ring = rring;
+        int index = (int) h & ring.mask;
+        T value = (T) ring.slots[index];
+        ring.slots[index] = null;
+        h++;
+        return value;
+    }
+
+    //  Moves the reader to the next ring when the writer linked one here.
+    private void follow()
+    {
+        if (h == rring.link) {
+            rring = rring.next;
+        }
+    }
+}
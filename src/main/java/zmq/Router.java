@@ -230,6 +230,8 @@ public class Router extends SocketBase
                 }
             }
 
+            //  The identity is consumed here, it is not written to the pipe.
+            msg.release();
             return true;
         }
 
@@ -241,12 +243,16 @@ public class Router extends SocketBase
             boolean ok = currentOut.write(msg);
             if (!ok) {
                 currentOut = null;
+                msg.release();
             }
             else if (!moreOut) {
                 currentOut.flush();
                 currentOut = null;
             }
         }
+        else {
+            msg.release();
+        }
 
         return true;
     }
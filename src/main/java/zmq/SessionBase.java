@@ -40,6 +40,17 @@ class SessionBase extends Own implements
     //  is still in the in pipe.
     private boolean incompleteIn;
 
+    //  Messages read ahead from the pipe, which is drained in batches.
+    private final Msg[] batch;
+    private int batchPos;
+    private int batchCount;
+
+    //  True while a priority message overtakes the ones read ahead.
+    private boolean overtaking;
+
+    //  True if the message being pulled expired and is being dropped.
+    private boolean dropping;
+
     //  True if termination have been suspended to push the pending
     //  messages to the network.
     private boolean pending;
@@ -51,14 +62,23 @@ class SessionBase extends Own implements
     protected SocketBase socket;
 
     //  I/O thread the session is living in. It will be used to plug in
-    //  the engines into the same thread.
-    private IOThread ioThread;
+    //  the engines into the same thread. Changes as the session moves to
+    //  another thread, read by the socket when rebalancing.
+    private volatile IOThread ioThread;
+
+    //  Bytes per second read or written by the engines of the session over
+    //  the last load window, when the current window started and the bytes
+    //  transferred since. Written by the thread it lives in only.
+    private volatile long rate;
+    private volatile long windowStart;
+    private long windowBytes;
 
     //  ID of the linger timer
     private static final int LINGER_TIMER_ID = 0x20;
 
-    //  True is linger timer is running.
+    //  True is linger timer is running, and when it expires.
     private boolean hasLingerTimer;
+    private long lingerDeadline;
 
     //  If true, identity has been sent/received from the network.
     private boolean identitySent;
@@ -133,10 +153,12 @@ class SessionBase extends Own implements
         this.connect = connect;
         pipe = null;
         incompleteIn = false;
+        batch = new Msg[Config.PIPE_READ_BATCH.getValue()];
         pending = false;
         engine = null;
         this.socket = socket;
         this.ioThread = ioThread;
+        windowStart = System.nanoTime();
         hasLingerTimer = false;
         identitySent = false;
         identityReceived = false;
@@ -159,6 +181,7 @@ class SessionBase extends Own implements
         //  Close the engine.
         if (engine != null) {
             engine.terminate();
+            engine = null;
         }
     }
 
@@ -170,6 +193,7 @@ class SessionBase extends Own implements
         assert (pipe != null);
         this.pipe = pipe;
         this.pipe.setEventSink(this);
+        this.pipe.setExpiredCounter(socket.expiredCounter());
     }
 
     public Msg pullMsg()
@@ -188,13 +212,41 @@ class SessionBase extends Own implements
             return null;
         }
 
-        Msg msg = pipe.read();
-        if (msg == null) {
-            return null;
-        }
-        incompleteIn = msg.hasMore();
+        while (true) {
+            //  A priority message waiting in the pipe goes before the ones
+            //  read ahead, as a whole.
+            Msg msg = null;
+            if (batchPos < batchCount && (!incompleteIn || overtaking)) {
+                msg = pipe.readPrio();
+                overtaking = msg != null && msg.hasMore();
+            }
+            if (msg == null) {
+                if (batchPos == batchCount) {
+                    batchCount = pipe.readBatch(batch, batch.length);
+                    batchPos = 0;
+                    if (batchCount == 0) {
+                        return null;
+                    }
+                }
+                msg = batch[batchPos];
+                batch[batchPos++] = null;
+            }
 
-        return msg;
+            //  Messages read ahead may have expired since, in particular
+            //  while waiting for the peer to reconnect. They are not encoded.
+            if (!incompleteIn) {
+                dropping = msg.expired();
+                if (dropping) {
+                    socket.expiredCounter().incrementAndGet();
+                }
+            }
+            incompleteIn = msg.hasMore();
+
+            if (!dropping) {
+                return msg;
+            }
+            msg.release();
+        }
 
     }
 
@@ -263,6 +315,7 @@ class SessionBase extends Own implements
         if (this.pipe == pipe) {
             // If this is our current pipe, remove it
             this.pipe = null;
+            dropBatch();
             if (hasLingerTimer) {
                 ioObject.cancelTimer(LINGER_TIMER_ID);
                 hasLingerTimer = false;
@@ -282,6 +335,18 @@ class SessionBase extends Own implements
         }
     }
 
+    //  Drops the messages read ahead from a pipe that is gone, as the ones
+    //  still in the pipe are.
+    private void dropBatch()
+    {
+        while (batchPos < batchCount) {
+            batch[batchPos].release();
+            batch[batchPos++] = null;
+        }
+        incompleteIn = false;
+        overtaking = false;
+    }
+
     @Override
     public void readActivated(Pipe pipe)
     {
@@ -327,6 +392,85 @@ class SessionBase extends Own implements
         return socket;
     }
 
+    IOThread ioThread()
+    {
+        return ioThread;
+    }
+
+    //  Called by the engines with the number of bytes they read or wrote.
+    //  The rate is measured over the same windows as the load of the I/O
+    //  threads.
+    void countBytes(int count)
+    {
+        windowBytes += count;
+
+        long now = System.nanoTime();
+        long window = Config.IO_LOAD_WINDOW.getValue() * 1000000L;
+        if (now - windowStart >= window) {
+            rate = windowBytes * 1000 / ((now - windowStart) / 1000000);
+            windowBytes = 0;
+            windowStart = now;
+        }
+    }
+
+    //  Returns the bytes per second the session transferred lately. Can be
+    //  invoked from a different thread. A session that has been quiet for
+    //  two windows in a row is considered idle.
+    long rate()
+    {
+        long window = Config.IO_LOAD_WINDOW.getValue() * 1000000L;
+        if (System.nanoTime() - windowStart >= 2 * window) {
+            return 0;
+        }
+        return rate;
+    }
+
+    @Override
+    protected void processMigrate(IOThread target)
+    {
+        //  On the first move, from now on the commands sent to the session
+        //  and its pipes are relayed by the thread it was created in.
+        if (migration == null) {
+            if (target == ioThread) {
+                return;
+            }
+            migration = new Migration(ioThread, target);
+            if (pipe != null) {
+                pipe.migration = migration;
+            }
+            for (Pipe terminating : terminatingPipes) {
+                terminating.migration = migration;
+            }
+        }
+
+        if (engine != null) {
+            engine.suspend();
+        }
+        if (hasLingerTimer) {
+            ioObject.cancelTimer(LINGER_TIMER_ID);
+        }
+        ioObject.unplug();
+
+        migration.leave();
+        sendMigrated(this, target);
+    }
+
+    @Override
+    protected void processMigrated(IOThread ioThread)
+    {
+        this.ioThread = ioThread;
+        ioObject.plug(ioThread);
+        ioObject.setHandler(this);
+        if (hasLingerTimer) {
+            ioObject.addTimer(Math.max(lingerDeadline - Clock.nowMS(), 0), LINGER_TIMER_ID);
+        }
+        if (engine != null) {
+            engine.resume(ioThread);
+        }
+
+        migration.arrive(ioThread);
+    }
+
     @Override
     protected void processPlug()
     {
@@ -346,11 +490,13 @@ class SessionBase extends Own implements
             ZObject[] parents = {this, socket};
             Pipe[] pipes = {null, null};
             int[] hwms = {options.recvHwm, options.sendHwm};
+            long[] hwmBytes = {options.recvHwmBytes, options.sendHwmBytes};
             boolean[] delays = {options.delayOnClose, options.delayOnDisconnect};
-            Pipe.pipepair(parents, pipes, hwms, delays);
+            Pipe.pipepair(parents, pipes, hwms, hwmBytes, delays);
 
             //  Plug the local end of the pipe.
             pipes[0].setEventSink(this);
+            pipes[0].migration = migration;
 
             //  Remember the local end of the pipe.
             assert (pipe == null);
@@ -404,6 +550,7 @@ class SessionBase extends Own implements
             assert (!hasLingerTimer);
             ioObject.addTimer(linger, LINGER_TIMER_ID);
             hasLingerTimer = true;
+            lingerDeadline = Clock.nowMS() + linger;
         }
 
         //  Start pipe termination process. Delay the termination till all messages
@@ -447,6 +594,7 @@ class SessionBase extends Own implements
             pipe.terminate(false);
             terminatingPipes.add(pipe);
             pipe = null;
+            dropBatch();
         }
 
         reset();
@@ -457,9 +605,11 @@ class SessionBase extends Own implements
         }
 
         //  For subscriber sockets we hiccup the inbound pipe, which will cause
-        //  the socket object to resend all the subscriptions.
+        //  the socket object to resend all the subscriptions. The ones read
+        //  ahead from the old pipe are dropped along with it.
         if (pipe != null && (options.type == ZMQ.ZMQ_SUB || options.type == ZMQ.ZMQ_XSUB)) {
             pipe.hiccup();
+            dropBatch();
         }
     }
 
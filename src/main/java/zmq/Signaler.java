@@ -24,63 +24,59 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Pipe;
 import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 //  This is a cross-platform equivalent to signal_fd. However, as opposed
 //  to signal_fd there can be at most one signal in the signaler at any
 //  given moment. Attempt to send a signal before receiving the previous
 //  one will result in undefined behaviour.
+//
+//  The waiting thread is parked rather than blocked in a selector, so a
+//  signaler uses no file descriptor at all until one is asked for. Only
+//  then is the pipe opened, for the benefit of pollers.
 
 public class Signaler
         implements Closeable
 {
-    //  Underlying write & read file descriptor.
-    private final Pipe.SinkChannel w;
-    private final Pipe.SourceChannel r;
-    private final Selector selector;
+    //  Underlying write & read file descriptor, created on demand.
+    private volatile Pipe.SinkChannel w;
+    private Pipe.SourceChannel r;
 
     // Selector.selectNow at every sending message doesn't show enough performance
     private final AtomicInteger wcursor = new AtomicInteger(0);
     private int rcursor = 0;
 
-    public Signaler()
-    {
-        //  Create the socketpair for signaling.
-        Pipe pipe;
+    //  Thread waiting for a signal, if any.
+    private volatile Thread waiter;
 
-        try {
-            pipe = Pipe.open();
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
-        r = pipe.source();
-        w = pipe.sink();
+    //  Serialises senders with the creation of the pipe and with close.
+    private final Lock sync = new ReentrantLock();
+    private volatile boolean closed;
 
-        //  Set both fds to non-blocking mode.
+    @Override
+    public void close() throws IOException
+    {
+        sync.lock();
         try {
-            Utils.unblockSocket(w);
-            Utils.unblockSocket(r);
+            closed = true;
         }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
+        finally {
+            sync.unlock();
         }
 
-        try {
-            selector = Selector.open();
-            r.register(selector, SelectionKey.OP_READ);
+        //  Like closing a selector, closing wakes up the waiting thread.
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
+        if (w == null) {
+            return;
         }
 
-    }
-
-    @Override
-    public void close() throws IOException
-    {
         IOException exception = null;
         try {
             r.close();
@@ -94,23 +90,85 @@ public class Signaler
         catch (IOException e) {
             exception = e;
         }
-        try {
-            selector.close();
-        }
-        catch (IOException e) {
-            exception = e;
-        }
         if (exception != null) {
             throw exception;
         }
     }
 
+    //  Returns the file descriptor to poll on, creating it first if needed.
     public SelectableChannel getFd()
     {
+        if (w != null) {
+            return r;
+        }
+
+        sync.lock();
+        try {
+            if (w == null) {
+                open();
+            }
+        }
+        finally {
+            sync.unlock();
+        }
         return r;
     }
 
+    private void open()
+    {
+        //  Create the socketpair for signaling.
+        Pipe pipe;
+
+        try {
+            pipe = Pipe.open();
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+        Pipe.SourceChannel source = pipe.source();
+        Pipe.SinkChannel sink = pipe.sink();
+
+        //  Set both fds to non-blocking mode.
+        try {
+            Utils.unblockSocket(sink);
+            Utils.unblockSocket(source);
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+
+        //  Carry over the signal sent before the pipe existed.
+        for (int pending = wcursor.get() - rcursor; pending > 0; pending--) {
+            write(sink);
+        }
+
+        r = source;
+        w = sink;
+    }
+
     public void send()
+    {
+        sync.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (w != null) {
+                write(w);
+            }
+            wcursor.incrementAndGet();
+        }
+        finally {
+            sync.unlock();
+        }
+
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void write(Pipe.SinkChannel sink)
     {
         int nbytes = 0;
         ByteBuffer dummy = ByteBuffer.allocate(1);
@@ -118,7 +176,7 @@ public class Signaler
         while (true) {
             try {
                 Thread.interrupted();
-                nbytes = w.write(dummy);
+                nbytes = sink.write(dummy);
             }
             catch (IOException e) {
                 throw new ZError.IOException(e);
@@ -127,53 +185,66 @@ public class Signaler
                 continue;
             }
             assert (nbytes == 1);
-            wcursor.incrementAndGet();
             break;
         }
     }
 
     public boolean waitEvent(long timeout)
     {
-        int rc = 0;
+        // waitEvent(0) is called every read/send of SocketBase
+        // instant readiness is not strictly required
+        // On the other hand, we can save lots of system call and increase performance
+        if (rcursor < wcursor.get() || timeout == 0) {
+            return rcursor < wcursor.get();
+        }
 
-        try {
-            if (timeout == 0) {
-                // waitEvent(0) is called every read/send of SocketBase
-                // instant readiness is not strictly required
-                // On the other hand, we can save lots of system call and increase performance
-                return rcursor < wcursor.get();
+        long deadline = 0;
+        if (timeout > 0) {
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        }
 
-            }
-            else if (timeout < 0) {
-                rc = selector.select(0);
-            }
-            else {
-                rc = selector.select(timeout);
+        //  Park until the sender bumps the cursor, publishing ourselves
+        //  before checking it so that the unpark is not missed.
+        waiter = Thread.currentThread();
+        try {
+            while (rcursor >= wcursor.get()) {
+                if (closed) {
+                    return false;
+                }
+                if (timeout < 0) {
+                    LockSupport.park(this);
+                }
+                else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return rcursor < wcursor.get();
+                }
             }
         }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
-
-        if (rc == 0) {
-            return false;
+        finally {
+            waiter = null;
         }
 
-        selector.selectedKeys().clear();
-
         return true;
     }
 
     public void recv()
     {
-        int nbytes = 0;
-        try {
-            ByteBuffer dummy = ByteBuffer.allocate(1);
-            nbytes = r.read(dummy);
-            assert nbytes == 1;
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
+        if (w != null) {
+            int nbytes = 0;
+            try {
+                ByteBuffer dummy = ByteBuffer.allocate(1);
+                nbytes = r.read(dummy);
+                assert nbytes == 1;
+            }
+            catch (IOException e) {
+                throw new ZError.IOException(e);
+            }
         }
         rcursor++;
     }
@@ -22,12 +22,15 @@ package zmq;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class SocketBase extends Own
     implements IPollEvents, Pipe.IPipeEvents
@@ -55,9 +58,21 @@ public abstract class SocketBase extends Own
     //  List of attached pipes.
     private final List<Pipe> pipes;
 
+    //  Flushes deferred by sendBatch.
+    private final Pipe.FlushBatch flushBatch;
+
+    //  Number of messages dropped because they expired while queued, to or
+    //  from this socket. Sessions count the ones they drop here as well.
+    private final AtomicLong expired;
+
+    //  Listener of the messages queued to each peer and its thresholds.
+    private IWatermarkListener watermarks;
+    private int highMark;
+    private int lowMark;
+
     //  Reaper's poller and handle of this socket within it.
     private Poller poller;
-    private SelectableChannel handle;
+    private Poller.Handle handle;
 
     //  Timestamp of when commands were processed the last time.
     private long lastTsc;
@@ -68,6 +83,14 @@ public abstract class SocketBase extends Own
     //  True if the last message received had MORE flag set.
     private boolean rcvmore;
 
+    //  Messages received by recvBatch before being handed over as arrays,
+    //  grown on demand.
+    private Msg[] recvBatch;
+
+    //  True if the last message received was a chunk of a larger frame,
+    //  with more chunks of the frame to follow.
+    private boolean rcvchunk;
+
     // Monitor socket
     private SocketBase monitorSocket;
 
@@ -85,6 +108,7 @@ public abstract class SocketBase extends Own
         lastTsc = 0;
         ticks = 0;
         rcvmore = false;
+        rcvchunk = false;
         monitorSocket = null;
         monitorEvents = 0;
 
@@ -94,6 +118,8 @@ public abstract class SocketBase extends Own
         endpoints = new MultiMap<String, Own>();
         inprocs = new MultiMap<String, Pipe>();
         pipes = new ArrayList<Pipe>();
+        flushBatch = new Pipe.FlushBatch();
+        expired = new AtomicLong();
 
         mailbox = new Mailbox("socket-" + sid);
 
@@ -220,6 +246,14 @@ public abstract class SocketBase extends Own
         //  First, register the pipe so that we can terminate it later on.
 
         pipe.setEventSink(this);
+        pipe.setFlushBatch(flushBatch);
+        pipe.setExpiredCounter(expired);
+        if (watermarks != null) {
+            pipe.setWatermarkListener(watermarks, highMark, lowMark);
+        }
+        if (options.swap > 0) {
+            pipe.setSwap(options.swap);
+        }
         pipes.add(pipe);
 
         //  Let the derived socket type know about new pipe.
@@ -259,6 +293,9 @@ public abstract class SocketBase extends Own
         if (option == ZMQ.ZMQ_RCVMORE) {
             return rcvmore ? 1 : 0;
         }
+        if (option == ZMQ.ZMQ_RCVCHUNKMORE) {
+            return rcvchunk ? 1 : 0;
+        }
         if (option == ZMQ.ZMQ_EVENTS) {
             boolean rc = processCommands(0, false);
             if (!rc && errno.get() == ZError.ETERM) {
@@ -288,10 +325,18 @@ public abstract class SocketBase extends Own
             return rcvmore ? 1 : 0;
         }
 
+        if (option == ZMQ.ZMQ_RCVCHUNKMORE) {
+            return rcvchunk ? 1 : 0;
+        }
+
         if (option == ZMQ.ZMQ_FD) {
             return mailbox.getFd();
         }
 
+        if (option == ZMQ.ZMQ_EXPIRED) {
+            return expired.get();
+        }
+
         if (option == ZMQ.ZMQ_EVENTS) {
             boolean rc = processCommands(0, false);
             if (!rc && errno.get() == ZError.ETERM) {
@@ -453,13 +498,23 @@ public abstract class SocketBase extends Own
             if (options.recvHwm != 0 && peer.options.sendHwm != 0) {
                 rcvhwm = options.recvHwm + peer.options.sendHwm;
             }
+            //  Same for the byte limits.
+            long sndhwmBytes = 0;
+            if (options.sendHwmBytes != 0 && peer.options.recvHwmBytes != 0) {
+                sndhwmBytes = options.sendHwmBytes + peer.options.recvHwmBytes;
+            }
+            long rcvhwmBytes = 0;
+            if (options.recvHwmBytes != 0 && peer.options.sendHwmBytes != 0) {
+                rcvhwmBytes = options.recvHwmBytes + peer.options.sendHwmBytes;
+            }
 
             //  Create a bi-directional pipe to connect the peers.
             ZObject[] parents = {this, peer.socket};
             Pipe[] pipes = {null, null};
             int[] hwms = {sndhwm, rcvhwm};
+            long[] hwmBytes = {sndhwmBytes, rcvhwmBytes};
             boolean[] delays = {options.delayOnDisconnect, options.delayOnClose};
-            Pipe.pipepair(parents, pipes, hwms, delays);
+            Pipe.pipepair(parents, pipes, hwms, hwmBytes, delays);
 
             //  Attach local end of the pipe to this socket object.
             attachPipe(pipes[0]);
@@ -526,8 +581,9 @@ public abstract class SocketBase extends Own
             ZObject[] parents = {this, session};
             Pipe[] pipes = {null, null};
             int[] hwms = {options.sendHwm, options.recvHwm};
+            long[] hwmBytes = {options.sendHwmBytes, options.recvHwmBytes};
             boolean[] delays = {options.delayOnDisconnect, options.delayOnClose};
-            Pipe.pipepair(parents, pipes, hwms, delays);
+            Pipe.pipepair(parents, pipes, hwms, hwmBytes, delays);
 
             //  Attach local end of the pipe to the socket object.
             attachPipe(pipes[0], icanhasall);
@@ -630,12 +686,16 @@ public abstract class SocketBase extends Own
         }
 
         //  Clear any user-visible flags that are set on the message.
-        msg.resetFlags(Msg.MORE);
+        msg.resetFlags(Msg.MORE | Msg.PRIORITY);
 
         //  At this point we impose the flags on the message.
         if ((flags & ZMQ.ZMQ_SNDMORE) > 0) {
             msg.setFlags(Msg.MORE);
         }
+        if ((flags & ZMQ.ZMQ_SNDPRIO) > 0) {
+            msg.setFlags(Msg.PRIORITY);
+        }
+        stamp(msg);
 
         //  Try to send the message.
         boolean rc = xsend(msg);
@@ -687,6 +747,91 @@ public abstract class SocketBase extends Own
         return true;
     }
 
+    //  Send count messages in one go. Each message keeps its own MORE flag,
+    //  ZMQ_SNDMORE in flags applies to the last one and ZMQ_SNDPRIO to all
+    //  of them, as it does to each message sent alone. Commands are processed
+    //  once and every pipe written to is flushed once, at the end. Returns
+    //  the number of messages sent, -1 if none could be sent.
+    public int sendBatch(Msg[] msgs, int count, int flags)
+    {
+        if (ctxTerminated) {
+            errno.set(ZError.ETERM);
+            return -1;
+        }
+
+        if (msgs == null || count < 0 || count > msgs.length) {
+            throw new IllegalArgumentException();
+        }
+
+        if (!processCommands(0, true)) {
+            return -1;
+        }
+
+        int sent = 0;
+        while (sent < count) {
+            flushBatch.begin();
+            try {
+                for (; sent < count; ++sent) {
+                    Msg msg = msgs[sent];
+                    if (msg == null) {
+                        throw new IllegalArgumentException();
+                    }
+                    if (sent == count - 1 && (flags & ZMQ.ZMQ_SNDMORE) > 0) {
+                        msg.setFlags(Msg.MORE);
+                    }
+                    if ((flags & ZMQ.ZMQ_SNDPRIO) > 0) {
+                        msg.setFlags(Msg.PRIORITY);
+                    }
+                    stamp(msg);
+                    if (!xsend(msg)) {
+                        break;
+                    }
+                }
+            }
+            finally {
+                flushBatch.end();
+            }
+
+            if (sent == count || errno.get() != ZError.EAGAIN) {
+                break;
+            }
+
+            //  The pipes are full. Fall back to a regular send, which waits
+            //  for room the usual way, and carry on batching afterwards.
+            Msg msg = msgs[sent];
+            int sflags = flags & ZMQ.ZMQ_DONTWAIT;
+            if (msg.hasMore()) {
+                sflags |= ZMQ.ZMQ_SNDMORE;
+            }
+            if ((msg.flags() & Msg.PRIORITY) > 0) {
+                sflags |= ZMQ.ZMQ_SNDPRIO;
+            }
+            if (!send(msg, sflags)) {
+                break;
+            }
+            ++sent;
+        }
+
+        if (sent == 0 && count > 0) {
+            return -1;
+        }
+        return sent;
+    }
+
+    //  Sets the time the message expires at, if it has a time to live.
+    private void stamp(Msg msg)
+    {
+        int ttl = msg.getTimeToLive() > 0 ? msg.getTimeToLive() : options.sendTtl;
+        if (ttl > 0) {
+            msg.expireAt(Clock.nowMS() + ttl);
+        }
+    }
+
+    AtomicLong expiredCounter()
+    {
+        return expired;
+    }
+
     public Msg recv(int flags)
     {
         if (ctxTerminated) {
@@ -777,6 +922,126 @@ public abstract class SocketBase extends Own
 
     }
 
+    //  Receives up to max messages that are available right away into out.
+    //  Commands are checked once per batch rather than once per message.
+    //  Unless ZMQ_DONTWAIT is set, waits for the first message the way recv
+    //  does. Returns the number of messages received, -1 if there were none.
+    public int recvBatch(Msg[] out, int max, int flags)
+    {
+        if (ctxTerminated) {
+            errno.set(ZError.ETERM);
+            return -1;
+        }
+
+        if (out == null || max <= 0 || max > out.length) {
+            throw new IllegalArgumentException();
+        }
+
+        //  The whole batch counts as a single tick of the inbound poll rate.
+        if (++ticks >= Config.INBOUND_POLL_RATE.getValue()) {
+            if (!processCommands(0, false)) {
+                return -1;
+            }
+            ticks = 0;
+        }
+
+        int count = drain(out, 0, max);
+        if (count > 0) {
+            return count;
+        }
+        if (errno.get() != ZError.EAGAIN) {
+            return -1;
+        }
+
+        //  Nothing was there yet. Let recv process the commands and wait
+        //  for the first message, then take whatever came along with it.
+        Msg msg = recv(flags);
+        if (msg == null) {
+            return -1;
+        }
+        out[0] = msg;
+        return drain(out, 1, max);
+    }
+
+    //  Moves the immediately available messages to out, from index pos.
+    private int drain(Msg[] out, int pos, int max)
+    {
+        while (pos < max) {
+            Msg msg = xrecv();
+            if (msg == null) {
+                break;
+            }
+            extractFlags(msg);
+            out[pos++] = msg;
+        }
+        return pos;
+    }
+
+    //  Receives a message as an array of its exact size. A pooled message
+    //  never leaves the socket, see Msg.detach.
+    public byte[] recvBytes(int flags)
+    {
+        Msg msg = recv(flags);
+        if (msg == null) {
+            return null;
+        }
+        return msg.detach();
+    }
+
+    //  Same as recvBatch above, the messages being handed over as arrays.
+    public int recvBatch(byte[][] out, int max, int flags)
+    {
+        if (out == null || max <= 0 || max > out.length) {
+            errno.set(ZError.EINVAL);
+            return -1;
+        }
+
+        if (recvBatch == null || recvBatch.length < max) {
+            recvBatch = new Msg[max];
+        }
+        int count = recvBatch(recvBatch, max, flags);
+        for (int i = 0; i < count; i++) {
+            out[i] = recvBatch[i].detach();
+            recvBatch[i] = null;
+        }
+        return count;
+    }
+
+    //  Receives a message into the supplied array, truncating it if it does
+    //  not fit. Returns the number of bytes copied, -1 on error. The message
+    //  itself never leaves the socket, so a pooled one is recycled as a
+    //  whole and, once the pool is warm, nothing is allocated per message.
+    public int recv(byte[] buffer, int offset, int len, int flags)
+    {
+        Msg msg = recv(flags);
+        if (msg == null) {
+            return -1;
+        }
+
+        int size = msg.getBytes(0, buffer, offset, len);
+        msg.recycle();
+        return size;
+    }
+
+    //  Same as above, the whole message being copied into the supplied
+    //  buffer. Throws BufferOverflowException if it does not fit.
+    public int recv(ByteBuffer buffer, int flags)
+    {
+        Msg msg = recv(flags);
+        if (msg == null) {
+            return -1;
+        }
+
+        int size = msg.size();
+        if (buffer.remaining() < size) {
+            msg.recycle();
+            throw new BufferOverflowException();
+        }
+        msg.getBytes(0, buffer, size);
+        msg.recycle();
+        return size;
+    }
+
     public void close()
     {
         //  Mark the socket as dead
@@ -806,8 +1071,7 @@ public abstract class SocketBase extends Own
     {
         //  Plug the socket to the reaper thread.
         this.poller = poller;
-        handle = mailbox.getFd();
-        this.poller.addHandle(handle, this);
+        handle = this.poller.addHandle(mailbox.getFd(), this);
         this.poller.setPollIn(handle);
 
         //  Initialise the termination and check whether it can be deallocated
@@ -825,7 +1089,7 @@ public abstract class SocketBase extends Own
         Command cmd;
         if (timeout != 0) {
             //  If we are asked to wait, simply ask mailbox to wait.
-            cmd = mailbox.recv(timeout);
+            cmd = mailbox.recv(timeout, options.busyPoll);
         }
         else {
             //  If we are asked not to wait, check whether we haven't processed
@@ -1074,6 +1338,78 @@ public abstract class SocketBase extends Own
 
         //  Remove MORE flag.
         rcvmore = msg.hasMore();
+        rcvchunk = msg.isChunk();
+    }
+
+    //  Notifies the listener when the messages queued to a peer reach high,
+    //  then again when they drop back to low. Peers report their progress
+    //  as the socket's flow control does, so the low threshold is noticed
+    //  with the granularity of the peer's low water mark and never with an
+    //  unlimited high water mark. A null listener stops the notifications.
+    public void setWatermarkListener(IWatermarkListener listener, int high, int low)
+    {
+        if (listener != null && (high <= 0 || low < 0 || low >= high)) {
+            throw new IllegalArgumentException("high " + high + ", low " + low);
+        }
+        watermarks = listener;
+        highMark = high;
+        lowMark = low;
+        for (Pipe pipe : pipes) {
+            pipe.setWatermarkListener(listener, high, low);
+        }
+    }
+
+    //  Moves the connection of the socket with the highest transfer rate
+    //  from the busiest I/O thread it uses to the least busy eligible one,
+    //  if the former was noticeably busier lately and also polls other
+    //  handles. Returns true if a connection is moving. Messages are not
+    //  affected by the move.
+    public boolean rebalance()
+    {
+        IOThread idlest = chooseIoThread(options.affinity);
+        if (idlest == null) {
+            return false;
+        }
+
+        SessionBase hottest = null;
+        IOThread busiest = null;
+        for (Pipe pipe : pipes) {
+            if (!(pipe.peerSink() instanceof SessionBase)) {
+                continue;
+            }
+            SessionBase session = (SessionBase) pipe.peerSink();
+            IOThread ioThread = session.ioThread();
+            if (busiest == null || ioThread.getUtilization() > busiest.getUtilization()) {
+                busiest = ioThread;
+                hottest = session;
+            }
+            else if (ioThread == busiest && session.rate() > hottest.rate()) {
+                hottest = session;
+            }
+        }
+
+        //  A thread polling nothing but its mailbox and this connection
+        //  would only hand its load over.
+        if (hottest == null || busiest == idlest || busiest.getLoad() <= 2 ||
+                busiest.getUtilization() - idlest.getUtilization() < Config.IO_REBALANCE_MARGIN.getValue()) {
+            return false;
+        }
+        sendMigrate(hottest, idlest);
+        return true;
+    }
+
+    //  Moves all the network connections of the socket to the given I/O
+    //  thread. Returns the number of connections moving.
+    int migrate(IOThread ioThread)
+    {
+        int count = 0;
+        for (Pipe pipe : pipes) {
+            if (pipe.peerSink() instanceof SessionBase) {
+                sendMigrate((SessionBase) pipe.peerSink(), ioThread);
+                count++;
+            }
+        }
+        return count;
     }
 
     public boolean monitor(final String addr, int events)
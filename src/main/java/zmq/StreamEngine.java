@@ -38,6 +38,9 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
     //final private IOObject ioObject;
     private SocketChannel handle;
 
+    //  Handle of the socket within the poller.
+    private Poller.Handle pollHandle;
+
     private ByteBuffer inbuf;
     private int insize;
     private DecoderBase decoder;
@@ -114,6 +117,16 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
     }
 
     private DecoderBase newDecoder(int size, long max, SessionBase session, int version)
+    {
+        DecoderBase decoder = createDecoder(size, max, session, version);
+        decoder.setMsgAllocator(this.session.getCtx().getMsgAllocator());
+        decoder.setDirect(options.directRecv == 1);
+        decoder.setSlice(options.sliceRecv == 1);
+        decoder.setChunkSize(options.recvChunk);
+        return decoder;
+    }
+
+    private DecoderBase createDecoder(int size, long max, SessionBase session, int version)
     {
         if (options.decoder == null) {
             if (version == V1Protocol.VERSION) {
@@ -201,6 +214,17 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             }
             handle = null;
         }
+
+        //  Release the file message that was being sent, so that its channel
+        //  does not outlive the connection.
+        if (outbuf != null) {
+            outbuf.release();
+            outbuf = null;
+            outsize = 0;
+        }
+        if (encoder != null) {
+            encoder.release();
+        }
     }
 
     public void plug(IOThread ioThread, SessionBase session)
@@ -218,7 +242,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         ioObject.setHandler(this);
         //  Connect to I/O threads poller object.
         ioObject.plug(ioThread);
-        ioObject.addHandle(handle);
+        pollHandle = ioObject.addHandle(handle);
         ioEnabled = true;
 
         //  Send the 'length' and 'flags' fields of the identity message.
@@ -227,7 +251,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         greetingOutputBuffer.putLong(options.identitySize + 1);
         greetingOutputBuffer.put((byte) 0x7f);
 
-        ioObject.setPollIn(handle);
+        ioObject.setPollIn(pollHandle);
         //  When there's a raw custom encoder, we don't send 10 bytes frame
         boolean custom = false;
         try {
@@ -242,7 +266,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             outsize = greetingOutputBuffer.position();
             greetingOutputBuffer.flip();
             outbuf = new Transfer.ByteBufferTransfer(greetingOutputBuffer);
-            ioObject.setPollOut(handle);
+            ioObject.setPollOut(pollHandle);
         }
 
         //  Flush all the data that may have been already received downstream.
@@ -256,7 +280,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
 
         //  Cancel all fd subscriptions.
         if (ioEnabled) {
-            ioObject.removeHandle(handle);
+            ioObject.removeHandle(pollHandle);
             ioEnabled = false;
         }
 
@@ -280,6 +304,35 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         destroy();
     }
 
+    @Override
+    public void suspend()
+    {
+        if (ioEnabled) {
+            ioObject.removeHandle(pollHandle);
+        }
+        ioObject.unplug();
+    }
+
+    @Override
+    public void resume(IOThread ioThread)
+    {
+        ioObject.setHandler(this);
+        ioObject.plug(ioThread);
+        if (!ioEnabled) {
+            return;
+        }
+        pollHandle = ioObject.addHandle(handle);
+
+        //  Which events were polled for is not known here. Polling for both
+        //  is harmless, as the handlers stop polling for what they have no
+        //  use for. While handshaking, output is only polled for to send
+        //  the rest of the greeting.
+        ioObject.setPollIn(pollHandle);
+        if (!handshaking || outsize > 0) {
+            ioObject.setPollOut(pollHandle);
+        }
+    }
+
     @Override
     public void inEvent()
     {
@@ -319,7 +372,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         else {
             //  Stop polling for input if we got stuck.
             if (processed < insize) {
-                ioObject.resetPollIn(handle);
+                ioObject.resetPollIn(pollHandle);
             }
 
             //  Adjust the buffer.
@@ -335,7 +388,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         //  the termination until after the message is accepted.
         if (disconnection) {
             if (decoder.stalled()) {
-                ioObject.removeHandle(handle);
+                ioObject.removeHandle(pollHandle);
                 ioEnabled = false;
             }
             else {
@@ -361,7 +414,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             outsize = outbuf.remaining();
             //  If there is no data to send, stop polling for output.
             if (outbuf.remaining() == 0) {
-                ioObject.resetPollOut(handle);
+                ioObject.resetPollOut(pollHandle);
 
                 // when we use custom encoder, we might want to close
                 if (encoder.isError()) {
@@ -383,7 +436,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         //  The engine is not terminated until we detect input error;
         //  this is necessary to prevent losing incomming messages.
         if (nbytes == -1) {
-            ioObject.resetPollOut(handle);
+            ioObject.resetPollOut(pollHandle);
             return;
         }
 
@@ -393,7 +446,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         //  to send, stop polling for output.
         if (handshaking) {
             if (outsize == 0) {
-                ioObject.resetPollOut(handle);
+                ioObject.resetPollOut(pollHandle);
             }
         }
 
@@ -426,7 +479,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
     @Override
     public void activateOut()
     {
-        ioObject.setPollOut(handle);
+        ioObject.setPollOut(pollHandle);
 
         //  Speculative write: The assumption is that at the moment new message
         //  was sent by the user the socket is probably available for writing.
@@ -449,7 +502,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             return;
         }
 
-        ioObject.setPollIn(handle);
+        ioObject.setPollIn(pollHandle);
 
         //  Speculative read.
         ioObject.inEvent();
@@ -494,7 +547,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
             //  Send the rest of the greeting, if necessary.
             if (greetingOutputBuffer.limit() < GREETING_SIZE) {
                 if (outsize == 0) {
-                    ioObject.setPollOut(handle);
+                    ioObject.setPollOut(pollHandle);
                 }
                 int pos = greetingOutputBuffer.position();
                 greetingOutputBuffer.position(10).limit(GREETING_SIZE);
@@ -560,7 +613,7 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         }
         // Start polling for output if necessary.
         if (outsize == 0) {
-            ioObject.setPollOut(handle);
+            ioObject.setPollOut(pollHandle);
         }
 
         //  Handshaking was successful.
@@ -612,6 +665,10 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         catch (IOException e) {
             return -1;
         }
+        if (nbytes > 0) {
+            ioObject.countBytes(nbytes);
+            session.countBytes(nbytes);
+        }
 
         return nbytes;
     }
@@ -625,6 +682,10 @@ public class StreamEngine implements IEngine, IPollEvents, IMsgSink
         catch (IOException e) {
             return -1;
         }
+        if (nbytes > 0) {
+            ioObject.countBytes(nbytes);
+            session.countBytes(nbytes);
+        }
 
         return nbytes;
     }
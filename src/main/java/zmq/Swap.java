@@ -0,0 +1,276 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//  Overflow of a pipe on disk. Messages that would take the pipe above its
+//  high water mark are appended to memory-mapped segment files and read
+//  back in order as the pipe drains.
+//
+//  A record is the size of the payload, the flags of the message, the time
+//  it expires at and the payload itself. When the next record does not fit
+//  into the current segment, the segment is closed with an end marker, if
+//  there is room for one, and the record goes to a new segment large enough
+//  for it. Segments are only created once the pipe overflows. Once read
+//  they are kept to be reused rather than mapped anew, as a mapping is only
+//  undone when its buffer is garbage collected. The space mapped is thus
+//  the most the swap ever held, which the quota bounds. Segments made
+//  larger than usual for a single large record are not kept, and stay
+//  mapped until collected.
+//
+//  The quota is checked between messages, so that a message is never split
+//  between the disk and the pipe. It may thus be exceeded by one message.
+class Swap
+{
+    private static final int HEADER = 16;
+    private static final int END = -1;
+
+    private static final class Segment
+    {
+        private final MappedByteBuffer buf;
+        private int writePos;
+        private int readPos;
+
+        private Segment(MappedByteBuffer buf)
+        {
+            this.buf = buf;
+        }
+
+        private int remaining(int pos)
+        {
+            return buf.capacity() - pos;
+        }
+    }
+
+    //  Maximum number of bytes stored.
+    private final long quota;
+
+    //  Segments from the one being read to the one being written.
+    private final Deque<Segment> segments;
+
+    //  Segments of the usual size already read, to be written again.
+    private final Deque<Segment> spare;
+
+    //  Number of segments mapped so far.
+    private int mapped;
+
+    //  Number of bytes stored, including the parts of a message being written.
+    private long size;
+
+    //  Number of complete messages stored.
+    private int msgs;
+
+    //  Bytes of the message being written, dropped on rollback.
+    private long uncommitted;
+
+    //  Where the last complete message ends, null if that segment is gone.
+    private Segment commitSegment;
+    private int commitPos;
+
+    public Swap(long quota)
+    {
+        this.quota = quota;
+        segments = new ArrayDeque<Segment>();
+        spare = new ArrayDeque<Segment>();
+    }
+
+    //  Returns true if another message may be spilled.
+    public boolean hasRoom()
+    {
+        return size < quota;
+    }
+
+    //  Returns true if nothing is stored, not even part of a message.
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    //  Returns true if there is a complete message to read.
+    public boolean hasMsg()
+    {
+        return msgs > 0;
+    }
+
+    //  Appends a message part to the swap.
+    public void write(Msg msg)
+    {
+        int length = msg.size();
+        int record = HEADER + length;
+
+        Segment seg = segments.peekLast();
+        if (seg == null || seg.remaining(seg.writePos) < record) {
+            if (seg != null && seg.remaining(seg.writePos) >= 4) {
+                seg.buf.putInt(seg.writePos, END);
+            }
+            seg = next(record);
+            segments.addLast(seg);
+        }
+
+        seg.buf.putInt(seg.writePos, length);
+        seg.buf.putInt(seg.writePos + 4, msg.flags());
+        seg.buf.putLong(seg.writePos + 8, msg.expiry());
+        ByteBuffer dst = seg.buf.duplicate();
+        dst.position(seg.writePos + HEADER);
+        byte[] array = msg.array();
+        if (array != null) {
+            dst.put(array, 0, length);
+        }
+        else {
+            dst.put(msg.buf());
+        }
+        seg.writePos += record;
+        size += record;
+
+        if (msg.hasMore()) {
+            uncommitted += record;
+        }
+        else {
+            msgs++;
+            uncommitted = 0;
+            commitSegment = seg;
+            commitPos = seg.writePos;
+        }
+    }
+
+    //  Drops the parts of the message being written.
+    public void rollback()
+    {
+        while (!segments.isEmpty() && segments.peekLast() != commitSegment) {
+            release(segments.pollLast());
+        }
+        if (commitSegment != null) {
+            commitSegment.writePos = commitPos;
+        }
+        size -= uncommitted;
+        uncommitted = 0;
+    }
+
+    //  Reads the next message part. There has to be a complete message.
+    public Msg read()
+    {
+        assert (msgs > 0);
+
+        Segment seg = segments.peekFirst();
+        while (seg.remaining(seg.readPos) < HEADER || seg.buf.getInt(seg.readPos) == END) {
+            release(segments.pollFirst());
+            seg = segments.peekFirst();
+        }
+
+        int length = seg.buf.getInt(seg.readPos);
+        int flags = seg.buf.getInt(seg.readPos + 4);
+        long expiry = seg.buf.getLong(seg.readPos + 8);
+        byte[] data = new byte[length];
+        ByteBuffer src = seg.buf.duplicate();
+        src.position(seg.readPos + HEADER);
+        src.get(data);
+        seg.readPos += HEADER + length;
+        size -= HEADER + length;
+
+        Msg msg = new Msg(data);
+        msg.setFlags(flags);
+        msg.expireAt(expiry);
+        if (!msg.hasMore()) {
+            msgs--;
+        }
+
+        //  Once everything has been read, start over in the last segment.
+        if (size == 0) {
+            while (segments.size() > 1) {
+                release(segments.pollFirst());
+            }
+            seg.readPos = 0;
+            seg.writePos = 0;
+            commitPos = 0;
+        }
+        return msg;
+    }
+
+    //  Drops everything stored.
+    public void close()
+    {
+        while (!segments.isEmpty()) {
+            release(segments.pollFirst());
+        }
+        spare.clear();
+        size = 0;
+        msgs = 0;
+        uncommitted = 0;
+    }
+
+    //  Returns a segment to write a record of the given size to, a spare
+    //  one if it fits.
+    private Segment next(int record)
+    {
+        int capacity = Config.SWAP_SEGMENT.getValue();
+        if (record <= capacity && !spare.isEmpty()) {
+            return spare.pollFirst();
+        }
+        mapped++;
+        return open(Math.max(record, capacity));
+    }
+
+    int mapped()
+    {
+        return mapped;
+    }
+
+    private static Segment open(int capacity)
+    {
+        try {
+            File file = File.createTempFile("zmq-swap-", ".seg");
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            MappedByteBuffer buf;
+            try {
+                buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            finally {
+                raf.close();
+            }
+            //  The mapping outlives the file where the platform allows it,
+            //  so that nothing is left behind if the process dies.
+            file.delete();
+            return new Segment(buf);
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+    }
+
+    private void release(Segment seg)
+    {
+        if (seg == commitSegment) {
+            commitSegment = null;
+        }
+        if (seg.buf.capacity() == Config.SWAP_SEGMENT.getValue()) {
+            seg.readPos = 0;
+            seg.writePos = 0;
+            spare.addLast(seg);
+        }
+    }
+}
@@ -41,6 +41,9 @@ public class TcpConnecter extends Own implements IPollEvents
     //  Underlying socket.
     private SocketChannel handle;
 
+    //  Handle of the socket within the poller.
+    private Poller.Handle pollHandle;
+
     //  If true file descriptor is registered with the poller and 'handle'
     //  contains valid value.
     private boolean handleValid;
@@ -110,7 +113,7 @@ public class TcpConnecter extends Own implements IPollEvents
         }
 
         if (handleValid) {
-            ioObject.removeHandle(handle);
+            ioObject.removeHandle(pollHandle);
             handleValid = false;
         }
 
@@ -160,7 +163,7 @@ public class TcpConnecter extends Own implements IPollEvents
             throw new ZError.IOException(e);
         }
 
-        ioObject.removeHandle(handle);
+        ioObject.removeHandle(pollHandle);
         handleValid = false;
 
         if (err) {
@@ -216,16 +219,16 @@ public class TcpConnecter extends Own implements IPollEvents
 
             //  Connect may succeed in synchronous manner.
             if (rc) {
-                ioObject.addHandle(handle);
+                pollHandle = ioObject.addHandle(handle);
                 handleValid = true;
                 ioObject.connectEvent();
             }
 
             //  Connection establishment may be delayed. Poll for its completion.
             else {
-                ioObject.addHandle(handle);
+                pollHandle = ioObject.addHandle(handle);
                 handleValid = true;
-                ioObject.setPollConnect(handle);
+                ioObject.setPollConnect(pollHandle);
                 socket.eventConnectDelayed(address.toString(), -1);
             }
         }
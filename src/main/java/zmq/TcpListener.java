@@ -39,6 +39,9 @@ public class TcpListener extends Own implements IPollEvents
     //  Underlying socket.
     private ServerSocketChannel handle;
 
+    //  Handle of the socket within the poller.
+    private Poller.Handle pollHandle;
+
     //  Socket the listerner belongs to.
     private SocketBase socket;
 
@@ -68,15 +71,15 @@ public class TcpListener extends Own implements IPollEvents
     {
         //  Start polling for incoming connections.
         ioObject.setHandler(this);
-        ioObject.addHandle(handle);
-        ioObject.setPollAccept(handle);
+        pollHandle = ioObject.addHandle(handle);
+        ioObject.setPollAccept(pollHandle);
     }
 
     @Override
     protected void processTerm(int linger)
     {
         ioObject.setHandler(this);
-        ioObject.removeHandle(handle);
+        ioObject.removeHandle(pollHandle);
         close();
         super.processTerm(linger);
     }
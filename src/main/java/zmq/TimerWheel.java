@@ -0,0 +1,248 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Hierarchical timing wheel holding the timers of a poller, with a
+//  resolution of one millisecond.
+//
+//  Each of the LEVELS wheels has SLOTS slots, a slot of a wheel spanning
+//  as much time as the whole wheel below it. A timer is put in the lowest
+//  wheel able to reach its deadline, in the slot of the deadline. As time
+//  goes round the lowest wheel, the timers of the next slot of the wheel
+//  above are moved down, closer to their deadline. Slots are doubly linked
+//  lists, so that timers are added and cancelled in constant time. Timers
+//  further away than the highest wheel reaches wait in its furthest slot.
+//
+//  Not thread-safe: timers are to be added, cancelled and executed by the
+//  thread of the poller only.
+public final class TimerWheel
+{
+    //  Handle of a timer, used to cancel it.
+    public static final class Timer
+    {
+        private final IPollEvents sink;
+        private final int id;
+        private final long deadline;
+
+        //  Neighbours in the slot, and the slot itself. A timer that is not
+        //  in a slot anymore, because it expired or was cancelled, has none.
+        private Timer prev;
+        private Timer next;
+        private Timer[] slots;
+        private int slot;
+
+        private Timer(IPollEvents sink, int id, long deadline)
+        {
+            this.sink = sink;
+            this.id = id;
+            this.deadline = deadline;
+        }
+
+        public int id()
+        {
+            return id;
+        }
+
+        public boolean isPending()
+        {
+            return slots != null;
+        }
+    }
+
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    //  Heads of the slots of each wheel.
+    private final Timer[][] wheels;
+
+    //  Next tick to process. Timers due before are all executed.
+    private long current;
+
+    //  Number of timers in the wheels, and in the lowest one.
+    private int count;
+    private int lowest;
+
+    public TimerWheel(long now)
+    {
+        wheels = new Timer[LEVELS][SLOTS];
+        current = now;
+    }
+
+    //  Adds a timer due timeout milliseconds after now, of the same clock
+    //  as the one given to execute. Once due, timerEvent on sink is called
+    //  with id as argument.
+    public Timer add(long now, long timeout, IPollEvents sink, int id)
+    {
+        //  Time is not followed while there are no timers.
+        if (count == 0 && now > current) {
+            current = now;
+        }
+
+        Timer timer = new Timer(sink, id, now + timeout);
+        insert(timer);
+        count++;
+        return timer;
+    }
+
+    //  Cancels a timer. Cancelling a timer that expired already or was
+    //  cancelled before does nothing.
+    public void cancel(Timer timer)
+    {
+        if (timer.slots != null) {
+            unlink(timer);
+            count--;
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    //  Executes the timers due at now. Returns the number of milliseconds
+    //  until the wheels are to be looked at again, at least 1, or 0 if
+    //  there are no timers left. That may be before the next timer is due,
+    //  for the timers of the upper wheels to be moved down.
+    public long execute(long now)
+    {
+        while (current <= now) {
+            if (count == 0) {
+                current = now + 1;
+                break;
+            }
+            if ((current & MASK) == 0) {
+                cascade();
+            }
+
+            //  Timers added while executing others and already due go into
+            //  the slot being drained, and are executed as well.
+            Timer[] slots = wheels[0];
+            int slot = (int) (current & MASK);
+            Timer timer = slots[slot];
+            while (timer != null) {
+                unlink(timer);
+                count--;
+                timer.sink.timerEvent(timer.id);
+                timer = slots[slot];
+            }
+            current++;
+
+            //  Skip to the end of the lowest wheel if it is empty.
+            if (lowest == 0 && (current & MASK) != 0) {
+                current = Math.min(now + 1, (current | MASK) + 1);
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        //  The timers of the upper wheels move down at the next boundary of
+        //  the lowest one, and may be due soon after, so the wait ends there
+        //  at the latest.
+        long boundary = (current & MASK) == 0 ? current : (current | MASK) + 1;
+        long next = boundary;
+        if (lowest > 0) {
+            for (long tick = current; tick < boundary; tick++) {
+                if (wheels[0][(int) (tick & MASK)] != null) {
+                    next = tick;
+                    break;
+                }
+            }
+        }
+        return Math.max(next - now, 1);
+    }
+
+    //  Moves the timers of the upper wheels whose slot starts now down.
+    private void cascade()
+    {
+        int level = 1;
+        while (level < LEVELS - 1 && (current & ((1L << (BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            Timer[] slots = wheels[level];
+            int slot = (int) ((current >>> (BITS * level)) & MASK);
+            Timer timer = slots[slot];
+            while (timer != null) {
+                unlink(timer);
+                insert(timer);
+                timer = slots[slot];
+            }
+        }
+    }
+
+    private void insert(Timer timer)
+    {
+        long delta = timer.deadline - current;
+        long tick = delta < 0 ? current : timer.deadline;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+
+        //  Beyond the reach of the highest wheel, wait in its furthest slot.
+        if (delta >= 1L << (BITS * LEVELS)) {
+            tick = current + (1L << (BITS * LEVELS)) - 1;
+        }
+
+        Timer[] slots = wheels[level];
+        int slot = (int) ((tick >>> (BITS * level)) & MASK);
+        Timer head = slots[slot];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[slot] = timer;
+        timer.slots = slots;
+        timer.slot = slot;
+        if (level == 0) {
+            lowest++;
+        }
+    }
+
+    private void unlink(Timer timer)
+    {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        }
+        else {
+            timer.slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        if (timer.slots == wheels[0]) {
+            lowest--;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.slots = null;
+    }
+}
@@ -29,6 +29,9 @@ public interface Transfer
     public int transferTo(WritableByteChannel s) throws IOException;
     public int remaining();
 
+    //  Releases what is left of the transfer when it is abandoned.
+    public void release();
+
     public static class ByteBufferTransfer implements Transfer
     {
         private ByteBuffer buf;
@@ -49,6 +52,11 @@ public interface Transfer
         {
             return buf.remaining();
         }
+
+        @Override
+        public final void release()
+        {
+        }
     }
 
     public static class FileChannelTransfer implements Transfer
@@ -59,6 +67,10 @@ public interface Transfer
         private long count;
         private int remaining;
 
+        //  Message the region comes from, if any. It is released, rather than
+        //  the channel closed, once the region is sent.
+        private Msg msg;
+
         public FileChannelTransfer(ByteBuffer buf, FileChannel channel, long position, long count)
         {
             parent = new ByteBufferTransfer(buf);
@@ -68,6 +80,12 @@ public interface Transfer
             remaining = parent.remaining() + (int) this.count;
         }
 
+        public FileChannelTransfer(ByteBuffer buf, Msg msg)
+        {
+            this(buf, msg.channel(), msg.channelPosition(), msg.size());
+            this.msg = msg;
+        }
+
         @Override
         public final int transferTo(WritableByteChannel s) throws IOException
         {
@@ -86,7 +104,12 @@ public interface Transfer
             remaining -= sent;
 
             if (remaining == 0) {
-                channel.close();
+                if (msg != null) {
+                    msg.release();
+                }
+                else {
+                    channel.close();
+                }
             }
 
             return sent;
@@ -97,5 +120,24 @@ public interface Transfer
         {
             return remaining;
         }
+
+        @Override
+        public final void release()
+        {
+            if (remaining == 0) {
+                return;
+            }
+            remaining = 0;
+            if (msg != null) {
+                msg.release();
+            }
+            else {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                }
+            }
+        }
     }
 }
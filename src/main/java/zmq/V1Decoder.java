@@ -34,6 +34,10 @@ public class V1Decoder extends DecoderBase
     private final long maxmsgsize;
     private int msgFlags;
 
+    //  Bytes of the current frame not yet handed to a message. Non-zero
+    //  only when the frame is received in chunks.
+    private long remaining;
+
     public V1Decoder(int bufsize, long maxmsgsize, IMsgSink session)
     {
         super(bufsize);
@@ -89,11 +93,11 @@ public class V1Decoder extends DecoderBase
         //  inProgress is initialised at this point so in theory we should
         //  close it before calling msgInitWithSize, however, it's a 0-byte
         //  message and thus we can treat it as uninitialised...
-        inProgress = new Msg(size);
+        inProgress = allocateChunk(size);
+        remaining = size - inProgress.size();
 
-        inProgress.setFlags(msgFlags);
-        nextStep(inProgress.data(), inProgress.size(),
-                MESSAGE_READY);
+        setChunkFlags();
+        nextStep(inProgress, MESSAGE_READY);
 
         return true;
     }
@@ -112,8 +116,9 @@ public class V1Decoder extends DecoderBase
             }
         }
 
-        //  Message size must fit within range of size_t data type.
-        if (msgSize > Integer.MAX_VALUE) {
+        //  Message size must fit within range of size_t data type,
+        //  unless the frame is received in chunks.
+        if (chunkSize() == 0 && msgSize > Integer.MAX_VALUE) {
             decodingError();
             return false;
         }
@@ -121,11 +126,11 @@ public class V1Decoder extends DecoderBase
         //  inProgress is initialised at this point so in theory we should
         //  close it before calling init_size, however, it's a 0-byte
         //  message and thus we can treat it as uninitialised.
-        inProgress = new Msg((int) msgSize);
+        inProgress = allocateChunk(msgSize);
+        remaining = msgSize - inProgress.size();
 
-        inProgress.setFlags(msgFlags);
-        nextStep(inProgress.data(), inProgress.size(),
-                MESSAGE_READY);
+        setChunkFlags();
+        nextStep(inProgress, MESSAGE_READY);
 
         return true;
     }
@@ -169,8 +174,29 @@ public class V1Decoder extends DecoderBase
             return false;
         }
 
+        //  Go on with the next chunk of the frame, if any.
+        if (remaining > 0) {
+            inProgress = allocateChunk(remaining);
+            remaining -= inProgress.size();
+            setChunkFlags();
+            nextStep(inProgress, MESSAGE_READY);
+            return true;
+        }
+
         nextStep(tmpbuf, 1, FLAGS_READY);
 
         return true;
     }
+
+    //  All the chunks of a frame but the last are flagged as such. The last
+    //  one carries the flags of the frame.
+    private void setChunkFlags()
+    {
+        if (remaining > 0) {
+            inProgress.setFlags(Msg.CHUNK);
+        }
+        else {
+            inProgress.setFlags(msgFlags);
+        }
+    }
 }
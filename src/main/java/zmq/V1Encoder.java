@@ -64,8 +64,7 @@ public class V1Encoder extends EncoderBase
     private boolean sizeReady()
     {
         //  Write message body into the buffer.
-        nextStep(inProgress.data(), inProgress.size(),
-                MESSAGE_READY, !inProgress.hasMore());
+        nextStep(inProgress, MESSAGE_READY, !inProgress.hasMore());
         return true;
     }
 
@@ -198,10 +198,7 @@ public class XSub extends SocketBase
 
             //  Message doesn't match. Pop any remaining parts of the message
             //  from the pipe.
-            while (msg.hasMore()) {
-                msg = fq.recv(errno);
-                assert (msg != null);
-            }
+            drop(msg);
         }
     }
 
@@ -239,15 +236,26 @@ public class XSub extends SocketBase
 
             //  Message doesn't match. Pop any remaining parts of the message
             //  from the pipe.
-            while (message.hasMore()) {
-                message = fq.recv(errno);
-                assert (message != null);
-            }
+            drop(message);
+            message = null;
+        }
+    }
+
+    //  Releases the message along with its remaining parts.
+    private void drop(Msg msg)
+    {
+        boolean more = msg.hasMore();
+        msg.release();
+        while (more) {
+            msg = fq.recv(errno);
+            assert (msg != null);
+            more = msg.hasMore();
+            msg.release();
         }
     }
 
     private boolean match(Msg msg)
     {
-        return subscriptions.check(msg.data());
+        return subscriptions.check(msg.buf());
     }
 }
@@ -21,7 +21,7 @@ package zmq;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class YPipe<T>
+public class YPipe<T> implements YPipeBase<T>
 {
     //  Allocation-efficient queue to store pipe items.
     //  Front of the queue points to the first prefetched item, back of
@@ -60,6 +60,7 @@ public class YPipe<T>
     //  set to true the item is assumed to be continued by items
     //  subsequently written to the pipe. Incomplete items are never
     //  flushed down the stream.
+    @Override
     public void write(final T value, boolean incomplete)
     {
         //  Place the value to the queue, add new terminator element.
@@ -73,6 +74,7 @@ public class YPipe<T>
 
     //  Pop an incomplete item from the pipe. Returns true is such
     //  item exists, false otherwise.
+    @Override
     public T unwrite()
     {
         if (f == queue.backPos()) {
@@ -85,6 +87,7 @@ public class YPipe<T>
     //  Flush all the completed items into the pipe. Returns false if
     //  the reader thread is sleeping. In that case, caller is obliged to
     //  wake the reader up before using the pipe again.
+    @Override
     public boolean flush()
     {
         //  If there are no un-flushed items, do nothing.
@@ -101,6 +104,10 @@ public class YPipe<T>
             //  that reader is sleeping.
             c.set(f);
             w = f;
+
+            //  The reader drained the pipe. If it has been quiet for a
+            //  while, let go of the chunks kept for the next burst.
+            queue.releaseSpares(Clock.nowMS(), Config.PIPE_SPARE_LINGER.getValue());
             return false;
         }
 
@@ -111,6 +118,7 @@ public class YPipe<T>
     }
 
     //  Check whether item is available for reading.
+    @Override
     public boolean checkRead()
     {
         //  Was the value prefetched already? If so, return.
@@ -127,15 +135,16 @@ public class YPipe<T>
              // nothing to read, h == r must be the same
         }
         else {
-            // something to have been written
-             r = c.get();
+            // something to have been written, unless the reader is
+            // polling while already asleep
+            int value = c.get();
+            if (value != -1) {
+                r = value;
+            }
         }
 
         //  If there are no elements prefetched, exit.
-        //  During pipe's lifetime r should never be NULL, however,
-        //  it can happen during pipe shutdown when items
-        //  are being deallocated.
-        if (h == r || r == -1) {
+        if (h == r) {
             return false;
         }
 
@@ -145,6 +154,7 @@ public class YPipe<T>
 
     //  Reads an item from the pipe. Returns false if there is no value.
     //  available.
+    @Override
     public T read()
     {
         //  Try to prefetch a value.
@@ -158,9 +168,27 @@ public class YPipe<T>
         return queue.pop();
     }
 
+    //  Reads up to max items from the pipe into out, prefetching at most
+    //  once. Returns the number of items read, 0 if there is none.
+    @Override
+    public int read(T[] out, int max)
+    {
+        if (!checkRead()) {
+            return 0;
+        }
+
+        //  Pop everything that was prefetched.
+        int count = 0;
+        while (count < max && queue.frontPos() != r) {
+            out[count++] = queue.pop();
+        }
+        return count;
+    }
+
     //  Applies the function fn to the first elemenent in the pipe
     //  and returns the value returned by the fn.
     //  The pipe mustn't be empty or the function crashes.
+    @Override
     public T probe()
     {
         boolean rc = checkRead();
@@ -0,0 +1,49 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+//  Interface shared by the lock-free pipes used to pass items between
+//  exactly one writer thread and one reader thread.
+public interface YPipeBase<T>
+{
+    //  Write an item to the pipe. Incomplete items are never flushed
+    //  down the stream until the closing complete item is written.
+    void write(final T value, boolean incomplete);
+
+    //  Pop an incomplete item from the pipe, or null if there is none.
+    T unwrite();
+
+    //  Flush all the completed items into the pipe. Returns false if
+    //  the reader thread is sleeping and has to be woken up.
+    boolean flush();
+
+    //  Check whether item is available for reading.
+    boolean checkRead();
+
+    //  Reads an item from the pipe, or null if there is none.
+    T read();
+
+    //  Reads up to max items into out, prefetching at most once.
+    int read(T[] out, int max);
+
+    //  Returns the first item in the pipe without removing it.
+    //  The pipe mustn't be empty.
+    T probe();
+}
@@ -21,11 +21,12 @@ package zmq;
 
 public class YQueue<T>
 {
-    //  Individual memory chunk to hold N elements.
+    //  Individual memory chunk to hold up to size elements. Elements are
+    //  identified by their position, unique among the chunks of a queue.
     private static class Chunk<T>
     {
         final T[] values;
-        final int[] pos;
+        final int base;
         Chunk<T> prev;
         Chunk<T> next;
 
@@ -33,11 +34,7 @@ public class YQueue<T>
         public Chunk(int size, int memoryPtr)
         {
             values = (T[]) new Object[size];
-            pos = new int[size];
-            for (int i = 0; i != values.length; i++) {
-                pos[i] = memoryPtr;
-                memoryPtr++;
-            }
+            base = memoryPtr;
         }
     };
 
@@ -45,14 +42,22 @@ public class YQueue<T>
     //  while begin & end positions are always valid. Begin position is
     //  accessed exclusively be queue reader (front/pop), while back and
     //  end positions are accessed exclusively by queue writer (back/push).
-    private Chunk<T> beginChunk;
+    //  The writer only reads the begin chunk, to find reusable chunks.
+    private volatile Chunk<T> beginChunk;
     private int beginPos;
     private Chunk<T> backChunk;
     private int backPos;
     private Chunk<T> endChunk;
     private int endPos;
     private volatile Chunk<T> spareChunk;
+
+    //  Largest chunk size. Chunks start small and double in size every
+    //  time a new one is needed, so that idle queues stay small.
     private final int size;
+    private int nextSize;
+
+    //  Time a chunk was last needed by the writer, in milliseconds.
+    private long lastChunk;
 
     //  People are likely to produce and consume at similar rates.  In
     //  this scenario holding onto the most recently freed chunk saves
@@ -62,9 +67,9 @@ public class YQueue<T>
     public YQueue(int size)
     {
         this.size = size;
+        nextSize = Math.min(size, Config.PIPE_MIN_CHUNK.getValue());
         memoryPtr = 0;
-        beginChunk = new Chunk<T>(size, memoryPtr);
-        memoryPtr += size;
+        beginChunk = allocate();
         beginPos = 0;
         backPos = 0;
         backChunk = beginChunk;
@@ -75,7 +80,7 @@ public class YQueue<T>
 
     public int frontPos()
     {
-        return beginChunk.pos[beginPos];
+        return beginChunk.base + beginPos;
     }
 
     //  Returns reference to the front element of the queue.
@@ -87,7 +92,7 @@ public class YQueue<T>
 
     public int backPos()
     {
-        return backChunk.pos[backPos];
+        return backChunk.base + backPos;
     }
 
     //  Returns reference to the back element of the queue.
@@ -102,7 +107,7 @@ public class YQueue<T>
         T val = beginChunk.values[beginPos];
         beginChunk.values[beginPos] = null;
         beginPos++;
-        if (beginPos == size) {
+        if (beginPos == beginChunk.values.length) {
             beginChunk = beginChunk.next;
             beginChunk.prev = null;
             beginPos = 0;
@@ -118,7 +123,7 @@ public class YQueue<T>
         backPos = endPos;
 
         endPos++;
-        if (endPos != size) {
+        if (endPos != endChunk.values.length) {
             return;
         }
 
@@ -129,12 +134,34 @@ public class YQueue<T>
             sc.prev = endChunk;
         }
         else {
-            endChunk.next = new Chunk<T>(size, memoryPtr);
-            memoryPtr += size;
+            endChunk.next = allocate();
             endChunk.next.prev = endChunk;
         }
         endChunk = endChunk.next;
         endPos = 0;
+        lastChunk = Clock.nowMS();
+    }
+
+    private Chunk<T> allocate()
+    {
+        Chunk<T> chunk = new Chunk<T>(nextSize, memoryPtr);
+        memoryPtr += nextSize;
+        nextSize = Math.min(nextSize * 2, size);
+        return chunk;
+    }
+
+    //  Releases the chunks already read and kept for reuse, provided the
+    //  writer did not need a new chunk for the given time. Sizes start
+    //  small again afterwards. Must be called by the writer.
+    public void releaseSpares(long now, long linger)
+    {
+        if (now - lastChunk < linger) {
+            return;
+        }
+
+        //  The reader may have moved past this chunk since, never before it.
+        spareChunk = beginChunk;
+        nextSize = Math.min(size, Config.PIPE_MIN_CHUNK.getValue());
     }
 
     //  Removes element from the back end of the queue. In other words
@@ -151,8 +178,8 @@ public class YQueue<T>
             backPos--;
         }
         else {
-            backPos = size - 1;
             backChunk = backChunk.prev;
+            backPos = backChunk.values.length - 1;
         }
 
         //  Now, move 'end' position backwards. Note that obsolete end chunk
@@ -163,9 +190,9 @@ public class YQueue<T>
             endPos--;
         }
         else {
-            endPos = size - 1;
             endChunk = endChunk.prev;
             endChunk.next = null;
+            endPos = endChunk.values.length - 1;
         }
     }
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -47,6 +48,7 @@ public class ZMQ
     /*  Default for new contexts                                                  */
     public static final int ZMQ_IO_THREADS_DFLT = 1;
     public static final int ZMQ_MAX_SOCKETS_DFLT = 1024;
+    public static final int ZMQ_MSG_POOL_SIZE_DFLT = 0;
 
     /******************************************************************************/
     /*  0MQ socket definition.                                                    */
@@ -111,6 +113,18 @@ public class ZMQ
     /* Custom options */
     public static final int ZMQ_ENCODER = 1001;
     public static final int ZMQ_DECODER = 1002;
+    public static final int ZMQ_MSG_POOL_SIZE = 1003;
+    public static final int ZMQ_DIRECT_RECV = 1004;
+    public static final int ZMQ_RCVCHUNK = 1005;
+    public static final int ZMQ_RCVCHUNKMORE = 1006;
+    public static final int ZMQ_SNDHWM_BYTES = 1007;
+    public static final int ZMQ_RCVHWM_BYTES = 1008;
+    public static final int ZMQ_SLICE_RECV = 1009;
+    public static final int ZMQ_BUSY_POLL_US = 1010;
+    public static final int ZMQ_SWAP = 1011;
+    public static final int ZMQ_SNDTTL = 1012;
+    public static final int ZMQ_EXPIRED = 1013;
+    public static final int ZMQ_IO_BUSY_POLL_US = 1014;
 
     /*  Message options                                                           */
     public static final int ZMQ_MORE = 1;
@@ -118,6 +132,7 @@ public class ZMQ
     /*  Send/recv options.                                                        */
     public static final int ZMQ_DONTWAIT = 1;
     public static final int ZMQ_SNDMORE = 2;
+    public static final int ZMQ_SNDPRIO = 4;
 
     /*  Deprecated aliases                                                        */
     public static final int ZMQ_NOBLOCK = ZMQ_DONTWAIT;
@@ -340,6 +355,24 @@ public class ZMQ
         return s.monitor(addr, events);
     }
 
+    public static boolean rebalance(SocketBase s)
+    {
+        if (s == null || !s.checkTag()) {
+            throw new IllegalStateException();
+        }
+
+        return s.rebalance();
+    }
+
+    public static void setWatermarkListener(SocketBase s, IWatermarkListener listener, int high, int low)
+    {
+        if (s == null || !s.checkTag()) {
+            throw new IllegalStateException();
+        }
+
+        s.setWatermarkListener(listener, high, low);
+    }
+
     public static boolean bind(SocketBase s, final String addr)
     {
         if (s == null || !s.checkTag()) {
@@ -407,6 +440,29 @@ public class ZMQ
         return rc;
     }
 
+    //  Send a region of a file without reading it into memory. The socket
+    //  takes ownership of the channel, which is closed once sent, dropped,
+    //  or if the send fails.
+    public static int sendFile(SocketBase s, FileChannel channel, long position, long length, int flags)
+    {
+        if (s == null || !s.checkTag()) {
+            throw new IllegalStateException();
+        }
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length " + length);
+        }
+
+        Msg msg = new Msg(channel, position, (int) length);
+
+        int rc = sendMsg(s, msg, flags);
+        if (rc < 0) {
+            msg.release();
+            return -1;
+        }
+
+        return rc;
+    }
+
     // Send multiple messages.
     //
     // If flag bit ZMQ_SNDMORE is set the vector is treated as
@@ -436,6 +492,16 @@ public class ZMQ
 
     }
 
+    //  Send several messages, flushing each pipe written to only once.
+    //  Returns the number of messages sent, -1 on error.
+    public static int sendBatch(SocketBase s, Msg[] msgs, int count, int flags)
+    {
+        if (s == null || !s.checkTag()) {
+            throw new IllegalStateException();
+        }
+        return s.sendBatch(msgs, count, flags);
+    }
+
     public static int sendMsg(SocketBase s, Msg msg, int flags)
     {
         int sz = msgSize(msg);
@@ -511,6 +577,16 @@ public class ZMQ
         return nread;
     }
 
+    //  Receive the messages available right away, up to max.
+    //  Returns the number of messages received, -1 on error.
+    public static int recvBatch(SocketBase s, Msg[] out, int max, int flags)
+    {
+        if (s == null || !s.checkTag()) {
+            throw new IllegalStateException();
+        }
+        return s.recvBatch(out, max, flags);
+    }
+
     public static Msg recvMsg(SocketBase s, int flags)
     {
         return s.recv(flags);
@@ -526,6 +602,11 @@ public class ZMQ
         return new Msg(messageSize);
     }
 
+    public static void msgClose(Msg msg)
+    {
+        msg.release();
+    }
+
     public static int msgSize(Msg msg)
     {
         return msg.size();
@@ -19,6 +19,8 @@
 
 package zmq;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 //  Base class for all objects that participate in inter-thread
 //  communication.
 public abstract class ZObject
@@ -29,6 +31,10 @@ public abstract class ZObject
     //  Thread ID of the thread the object belongs to.
     private final int tid;
 
+    //  Set on a session, and on its pipes, once it was moved to another
+    //  I/O thread than the one it belongs to.
+    Migration migration;
+
     protected ZObject(Ctx ctx, int tid)
     {
         this.ctx = ctx;
@@ -52,13 +58,15 @@ public abstract class ZObject
 
     protected void processCommand(Command cmd)
     {
+        cmd.received();
         switch (cmd.type()) {
         case ACTIVATE_READ:
             processActivateRead();
             break;
 
         case ACTIVATE_WRITE:
-            processActivateWrite((Long) cmd.arg);
+            AtomicLongArray read = (AtomicLongArray) cmd.arg;
+            processActivateWrite(read.get(0), read.get(1));
             break;
 
         case STOP:
@@ -117,6 +125,14 @@ public abstract class ZObject
             processReaped();
             break;
 
+        case MIGRATE:
+            processMigrate((IOThread) cmd.arg);
+            break;
+
+        case MIGRATED:
+            processMigrated((IOThread) cmd.arg);
+            break;
+
         default:
             throw new IllegalArgumentException();
         }
@@ -208,22 +224,34 @@ public abstract class ZObject
         sendCommand(cmd);
     }
 
-    protected void sendActivateRead(Pipe destination)
+    //  Flow control commands are sent over and over between the same pipes.
+    //  Their senders keep reusable commands, see Command.post.
+    protected void sendActivateRead(Command cmd)
     {
-        Command cmd = new Command(destination, Command.Type.ACTIVATE_READ);
-        sendCommand(cmd);
+        if (cmd.post()) {
+            sendCommand(cmd);
+        }
     }
 
-    protected void sendActivateWrite(Pipe destination, long msgsRead)
+    //  The counts of activate_write may be updated while the peer reads
+    //  them. Each only grows, so reading one before and the other after an
+    //  update still gives counts the peer has reached.
+    protected void sendActivateWrite(Command cmd, long msgsRead, long bytesRead)
     {
-        Command cmd = new Command(destination, Command.Type.ACTIVATE_WRITE, msgsRead);
-        sendCommand(cmd);
+        AtomicLongArray read = (AtomicLongArray) cmd.arg;
+        read.set(0, msgsRead);
+        read.set(1, bytesRead);
+        if (cmd.post()) {
+            sendCommand(cmd);
+        }
     }
 
-    protected void sendHiccup(Pipe destination, Object pipe)
+    protected void sendHiccup(Command cmd, Object pipe)
     {
-        Command cmd = new Command(destination, Command.Type.HICCUP, pipe);
-        sendCommand(cmd);
+        cmd.arg = pipe;
+        if (cmd.post()) {
+            sendCommand(cmd);
+        }
     }
 
     protected void sendPipeTerm(Pipe destination)
@@ -268,6 +296,19 @@ public abstract class ZObject
         sendCommand(cmd);
     }
 
+    protected void sendMigrate(SessionBase destination, IOThread ioThread)
+    {
+        Command cmd = new Command(destination, Command.Type.MIGRATE, ioThread);
+        sendCommand(cmd);
+    }
+
+    //  Sent to the thread the session moves to rather than to its own.
+    protected void sendMigrated(SessionBase destination, IOThread ioThread)
+    {
+        Command cmd = new Command(destination, Command.Type.MIGRATED, ioThread);
+        ctx.sendCommand(ioThread.getTid(), cmd);
+    }
+
     protected void sendDone()
     {
         Command cmd = new Command(null, Command.Type.DONE);
@@ -304,7 +345,7 @@ public abstract class ZObject
         throw new UnsupportedOperationException();
     }
 
-    protected void processActivateWrite(long msgsRead)
+    protected void processActivateWrite(long msgsRead, long bytesRead)
     {
         throw new UnsupportedOperationException();
     }
@@ -349,6 +390,16 @@ public abstract class ZObject
         throw new UnsupportedOperationException();
     }
 
+    protected void processMigrate(IOThread ioThread)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void processMigrated(IOThread ioThread)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     //  Special handler called after a command that requires a seqnum
     //  was processed. The implementation should catch up with its counter
     //  of processed commands here.
@@ -166,6 +166,56 @@ public class TestZMQ
 
     }
 
+    @Test
+    public void testDirectByteBufferSendRecv() throws InterruptedException, CharacterCodingException
+    {
+        ZMQ.Context context = ZMQ.context(1);
+        ByteBuffer out = ByteBuffer.allocateDirect(16384);
+        ByteBuffer in = ByteBuffer.allocateDirect(16384);
+        ZMQ.Socket push = null;
+        ZMQ.Socket pull = null;
+        try {
+            push = context.socket(ZMQ.PUSH);
+            pull = context.socket(ZMQ.PULL);
+            pull.setDirectRecv(true);
+            assertEquals(true, pull.getDirectRecv());
+            pull.bind("tcp://*:12347");
+            push.connect("tcp://localhost:12347");
+
+            //  Large enough to go through the zero-copy paths of the codecs.
+            for (int i = 0; i < 10000; i++) {
+                out.put((byte) i);
+            }
+            out.flip();
+            assertEquals(10000, push.sendByteBuffer(out, 0));
+            assertEquals(10000, pull.recvByteBuffer(in, 0));
+            in.flip();
+            for (int i = 0; i < 10000; i++) {
+                assertEquals((byte) i, in.get(i));
+            }
+        }
+        finally {
+            try {
+                push.close();
+            }
+            catch (Exception ignore) {
+                ignore.printStackTrace();
+            }
+            try {
+                pull.close();
+            }
+            catch (Exception ignore) {
+                ignore.printStackTrace();
+            }
+            try {
+                context.term();
+            }
+            catch (Exception ignore) {
+                ignore.printStackTrace();
+            }
+        }
+    }
+
     @Test(expected = ZMQException.class)
     public void testBindSameAddress()
     {
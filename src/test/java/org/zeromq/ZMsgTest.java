@@ -19,6 +19,9 @@
 
 package org.zeromq;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -71,4 +74,34 @@ public class ZMsgTest
         receiver.close();
         ctx.close();
     }
+
+    @Test
+    public void testSendBatch()
+    {
+        ZMQ.Context ctx = ZMQ.context(1);
+        ZMQ.Socket receiver = ctx.socket(ZMQ.PULL);
+        ZMQ.Socket sender = ctx.socket(ZMQ.PUSH);
+        receiver.bind("inproc://batch-" + this.hashCode());
+        sender.connect("inproc://batch-" + this.hashCode());
+
+        List<ZMsg> msgs = new ArrayList<ZMsg>();
+        for (int i = 0; i < 3; i++) {
+            ZMsg msg = new ZMsg();
+            msg.add("head" + i);
+            msg.add("body" + i);
+            msgs.add(msg);
+        }
+        Assert.assertTrue(ZMsg.sendBatch(sender, msgs, true));
+
+        for (int i = 0; i < 3; i++) {
+            ZMsg msg = ZMsg.recvMsg(receiver);
+            Assert.assertEquals(2, msg.size());
+            Assert.assertEquals("head" + i, msg.popString());
+            Assert.assertEquals("body" + i, msg.popString());
+        }
+
+        sender.close();
+        receiver.close();
+        ctx.close();
+    }
 }
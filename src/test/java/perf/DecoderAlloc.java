@@ -0,0 +1,147 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import zmq.Config;
+import zmq.Decoder;
+import zmq.IMsgSink;
+import zmq.Msg;
+import zmq.MsgAllocator;
+import zmq.ZMQ;
+
+//  Compares the decoding path with plain heap allocation against the
+//  pooled allocator, and against slices of pooled receive batches.
+//  Frames are decoded from memory so that only the allocation cost of
+//  the decoder is measured.
+public class DecoderAlloc
+{
+    private DecoderAlloc()
+    {
+    }
+
+    static class ReleasingSink implements IMsgSink
+    {
+        private long count;
+
+        @Override
+        public int pushMsg(Msg msg)
+        {
+            count++;
+            msg.release();
+            return 0;
+        }
+    }
+
+    public static void main(String[] argv)
+    {
+        int messageSize;
+        long messageCount;
+        int poolSize;
+
+        if (argv.length != 3) {
+            printf("usage: decoder_alloc <message-size> <message-count> <pool-size>");
+            return;
+        }
+        messageSize = atoi(argv [0]);
+        messageCount = atol(argv [1]);
+        poolSize = atoi(argv [2]);
+
+        if (messageSize + 1 > 255) {
+            printf("message size must be below 254 bytes");
+            return;
+        }
+
+        //  Fill a batch with as many whole frames as fit in it.
+        int frameSize = messageSize + 2;
+        int framesPerBatch = Config.IN_BATCH_SIZE.getValue() / frameSize;
+        byte[] batch = new byte[framesPerBatch * frameSize];
+        for (int i = 0; i < framesPerBatch; i++) {
+            batch [i * frameSize] = (byte) (messageSize + 1);
+        }
+
+        //  Warm up both paths before measuring.
+        run(batch, framesPerBatch, messageCount / 10, null, false);
+        run(batch, framesPerBatch, messageCount / 10, new MsgAllocator(poolSize), false);
+        run(batch, framesPerBatch, messageCount / 10, new MsgAllocator(poolSize), true);
+
+        printf("message size: %d [B]", messageSize);
+        printf("message count: %d", messageCount);
+        run(batch, framesPerBatch, messageCount, null, false);
+        run(batch, framesPerBatch, messageCount, new MsgAllocator(poolSize), false);
+        run(batch, framesPerBatch, messageCount, new MsgAllocator(poolSize), true);
+    }
+
+    private static void run(byte[] batch, int framesPerBatch, long messageCount, MsgAllocator allocator,
+                            boolean slice)
+    {
+        Decoder decoder = new Decoder(Config.IN_BATCH_SIZE.getValue(), -1);
+        decoder.setMsgAllocator(allocator);
+        decoder.setSlice(slice);
+        ReleasingSink sink = new ReleasingSink();
+        decoder.setMsgSink(sink);
+
+        long gcs = gcCount();
+        long watch = ZMQ.startStopwatch();
+
+        while (sink.count < messageCount) {
+            ByteBuffer buf = decoder.getBuffer();
+            buf.put(batch);
+            buf.flip();
+            decoder.processBuffer(buf, batch.length);
+        }
+
+        long elapsed = ZMQ.stopStopwatch(watch);
+        if (elapsed == 0) {
+            elapsed = 1;
+        }
+        long throughput = (long) ((double) sink.count / (double) elapsed * 1000000L);
+
+        printf("%s: %d [msg/s], %d collections", allocator == null ? "heap" : slice ? "sliced" : "pooled",
+                throughput, gcCount() - gcs);
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static long atol(String string)
+    {
+        return Long.valueOf(string);
+    }
+}
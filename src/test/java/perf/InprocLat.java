@@ -34,10 +34,12 @@ public class InprocLat
     {
         private Ctx ctx;
         private int roundtripCount;
-        Worker(Ctx ctx, int roundtripCount)
+        private int busyPoll;
+        Worker(Ctx ctx, int roundtripCount, int busyPoll)
         {
             this.ctx = ctx;
             this.roundtripCount = roundtripCount;
+            this.busyPoll = busyPoll;
         }
 
         @Override
@@ -48,6 +50,7 @@ public class InprocLat
                 printf("error in socket: %s\n");
                 exit(1);
             }
+            ZMQ.setSocketOption(s, ZMQ.ZMQ_BUSY_POLL_US, busyPoll);
 
             boolean rc = ZMQ.connect(s, "inproc://lat_test");
             if (!rc) {
@@ -81,13 +84,14 @@ public class InprocLat
 
     public static void main(String[] argv) throws Exception
     {
-        if (argv.length != 2) {
-            printf("usage: inproc_lat <message-size> <roundtrip-count>\n");
+        if (argv.length != 2 && argv.length != 3) {
+            printf("usage: inproc_lat <message-size> <roundtrip-count> [<busy-poll-us>]\n");
             return;
         }
 
         int messageSize = atoi(argv [0]);
         int roundtripCount = atoi(argv [1]);
+        int busyPoll = argv.length == 3 ? atoi(argv [2]) : 0;
 
         Ctx ctx = ZMQ.init(1);
         if (ctx == null) {
@@ -100,6 +104,7 @@ public class InprocLat
             printf("error in socket: ");
             return;
         }
+        ZMQ.setSocketOption(s, ZMQ.ZMQ_BUSY_POLL_US, busyPoll);
 
         boolean rc = ZMQ.bind(s, "inproc://lat_test");
         if (!rc) {
@@ -107,13 +112,14 @@ public class InprocLat
             return;
         }
 
-        Thread localThread = new Thread(new Worker(ctx, roundtripCount));
+        Thread localThread = new Thread(new Worker(ctx, roundtripCount, busyPoll));
         localThread.start();
 
         Msg smsg = ZMQ.msgInitWithSize(messageSize);
 
         printf("message size: %d [B]\n", (int) messageSize);
         printf("roundtrip count: %d\n", (int) roundtripCount);
+        printf("busy poll: %d [us]\n", busyPoll);
 
         long watch = ZMQ.startStopwatch();
 
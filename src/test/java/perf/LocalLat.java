@@ -35,6 +35,7 @@ public class LocalLat
         String bindTo;
         int roundtripCount;
         int messageSize;
+        int busyPoll;
         Ctx ctx;
         SocketBase s;
         boolean rc;
@@ -42,20 +43,22 @@ public class LocalLat
         int i;
         Msg msg;
 
-        if (args.length != 3) {
+        if (args.length != 3 && args.length != 4) {
             printf("usage: local_lat <bind-to> <message-size> "
-               + "<roundtrip-count>\n");
+               + "<roundtrip-count> [<io-busy-poll-us>]\n");
             return;
         }
         bindTo = args [0];
         messageSize = atoi(args [1]);
         roundtripCount = atoi(args [2]);
+        busyPoll = args.length == 4 ? atoi(args [3]) : 0;
 
         ctx = ZMQ.init(1);
         if (ctx == null) {
             printf("error in init: %s\n");
             return;
         }
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL_US, busyPoll);
 
         s = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
         if (s == null) {
@@ -86,7 +89,7 @@ public class LocalLat
             }
         }
 
-        ZMQ.sleep(1000);
+        ZMQ.sleep(1);
 
         ZMQ.close(s);
 
@@ -0,0 +1,185 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import zmq.Config;
+import zmq.MpscPipe;
+import zmq.YPipe;
+import zmq.ZMQ;
+
+//  Compares the command queue of a mailbox under contention: the former
+//  YPipe guarded by a lock on the sending side against the lock-free
+//  MpscPipe. Each producer thread sends its share of the items while a
+//  single consumer thread drains them.
+public class MailboxThr
+{
+    private MailboxThr()
+    {
+    }
+
+    private static final Integer ITEM = 42;
+
+    private interface Queue
+    {
+        boolean write(Integer item);
+
+        Integer read();
+    }
+
+    private static class LockedQueue implements Queue
+    {
+        private final YPipe<Integer> pipe = new YPipe<Integer>(Config.COMMAND_PIPE_GRANULARITY.getValue());
+        private final Lock sync = new ReentrantLock();
+
+        @Override
+        public boolean write(Integer item)
+        {
+            sync.lock();
+            try {
+                pipe.write(item, false);
+                return pipe.flush();
+            }
+            finally {
+                sync.unlock();
+            }
+        }
+
+        @Override
+        public Integer read()
+        {
+            return pipe.read();
+        }
+    }
+
+    private static class LockFreeQueue implements Queue
+    {
+        private static class Item extends MpscPipe.Node
+        {
+            private final Integer value;
+
+            private Item(Integer value)
+            {
+                this.value = value;
+            }
+        }
+
+        private final MpscPipe<Item> pipe = new MpscPipe<Item>();
+
+        @Override
+        public boolean write(Integer item)
+        {
+            return pipe.write(new Item(item));
+        }
+
+        @Override
+        public Integer read()
+        {
+            Item item = pipe.read();
+            return item == null ? null : item.value;
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 2) {
+            printf("usage: mailbox_thr <producer-count> <message-count>");
+            return;
+        }
+        int producerCount = atoi(argv [0]);
+        long messageCount = atol(argv [1]);
+
+        //  Warm up both queues before measuring.
+        run(new LockedQueue(), producerCount, messageCount / 10);
+        run(new LockFreeQueue(), producerCount, messageCount / 10);
+
+        printf("producer count: %d", producerCount);
+        printf("message count: %d", messageCount);
+        printf("locked: %d [msg/s]", run(new LockedQueue(), producerCount, messageCount));
+        printf("lock-free: %d [msg/s]", run(new LockFreeQueue(), producerCount, messageCount));
+    }
+
+    private static long run(final Queue queue, int producerCount, long messageCount) throws Exception
+    {
+        final long share = messageCount / producerCount;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[producerCount];
+
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (long j = 0; j < share; j++) {
+                        queue.write(ITEM);
+                    }
+                }
+            };
+            producers[i].start();
+        }
+
+        long total = share * producerCount;
+        long watch = ZMQ.startStopwatch();
+        start.countDown();
+        long count = 0;
+        while (count < total) {
+            if (queue.read() == null) {
+                Thread.yield();
+            }
+            else {
+                count++;
+            }
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        if (elapsed == 0) {
+            elapsed = 1;
+        }
+        return (long) ((double) total / (double) elapsed * 1000000L);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static long atol(String string)
+    {
+        return Long.valueOf(string);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import zmq.Ctx;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Measures the heap used per idle inproc connection, once with the
+//  default HWMs and once with unbounded pipes.
+public class PipeFootprint
+{
+    private PipeFootprint()
+    {
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 1) {
+            printf("usage: pipe_footprint <connection-count>");
+            return;
+        }
+        int connectionCount = atoi(argv [0]);
+
+        printf("connection count: %d", connectionCount);
+        printf("default hwm: %d [B/connection]", measure(connectionCount, 1000));
+        printf("no hwm: %d [B/connection]", measure(connectionCount, 0));
+    }
+
+    private static long measure(int connectionCount, int hwm)
+    {
+        Ctx ctx = ZMQ.init(1);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MAX_SOCKETS, connectionCount + 2);
+
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_SNDHWM, hwm);
+        ZMQ.setSocketOption(router, ZMQ.ZMQ_RCVHWM, hwm);
+        ZMQ.bind(router, "inproc://footprint");
+
+        SocketBase[] dealers = new SocketBase[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            dealers[i] = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+            ZMQ.setSocketOption(dealers[i], ZMQ.ZMQ_SNDHWM, hwm);
+            ZMQ.setSocketOption(dealers[i], ZMQ.ZMQ_RCVHWM, hwm);
+        }
+
+        //  Only the connections are accounted for, not the sockets.
+        long heap = heapUsed();
+        for (SocketBase dealer : dealers) {
+            ZMQ.connect(dealer, "inproc://footprint");
+        }
+        long used = (heapUsed() - heap) / connectionCount;
+
+        for (SocketBase dealer : dealers) {
+            ZMQ.close(dealer);
+        }
+        ZMQ.close(router);
+        ZMQ.term(ctx);
+        return used;
+    }
+
+    private static long heapUsed()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import zmq.Config;
+import zmq.RingPipe;
+import zmq.YPipe;
+import zmq.YPipeBase;
+import zmq.ZMQ;
+
+//  Compares YPipe against the preallocated RingPipe. Throughput is
+//  measured with one thread writing and flushing every item while another
+//  drains the pipe in batches. Latency is measured by bouncing an item
+//  between two threads over a pair of pipes, both threads spinning.
+public class PipeThr
+{
+    private PipeThr()
+    {
+    }
+
+    private static final Integer ITEM = 42;
+
+    private interface PipeFactory
+    {
+        YPipeBase<Integer> create();
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 3) {
+            printf("usage: pipe_thr <ring-size> <message-count> <roundtrip-count>");
+            return;
+        }
+        final int ringSize = atoi(argv [0]);
+        long messageCount = atol(argv [1]);
+        long roundtripCount = atol(argv [2]);
+
+        PipeFactory ypipe = new PipeFactory()
+        {
+            @Override
+            public YPipeBase<Integer> create()
+            {
+                return new YPipe<Integer>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
+            }
+        };
+        PipeFactory ring = new PipeFactory()
+        {
+            @Override
+            public YPipeBase<Integer> create()
+            {
+                return new RingPipe<Integer>(ringSize);
+            }
+        };
+
+        //  Warm up both pipes before measuring.
+        throughput(ypipe, messageCount / 10);
+        throughput(ring, messageCount / 10);
+        latency(ypipe, roundtripCount / 10);
+        latency(ring, roundtripCount / 10);
+
+        printf("message count: %d", messageCount);
+        printf("ypipe: %d [msg/s]", throughput(ypipe, messageCount));
+        printf("ring: %d [msg/s]", throughput(ring, messageCount));
+        printf("roundtrip count: %d", roundtripCount);
+        printf("ypipe: %.3f [us] average latency", latency(ypipe, roundtripCount));
+        printf("ring: %.3f [us] average latency", latency(ring, roundtripCount));
+    }
+
+    private static long throughput(PipeFactory factory, final long messageCount) throws Exception
+    {
+        final YPipeBase<Integer> pipe = factory.create();
+        Integer[] batch = new Integer[Config.PIPE_READ_BATCH.getValue()];
+
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (long i = 0; i < messageCount; i++) {
+                    pipe.write(ITEM, false);
+                    pipe.flush();
+                }
+            }
+        };
+
+        long watch = ZMQ.startStopwatch();
+        writer.start();
+        long count = 0;
+        while (count < messageCount) {
+            count += pipe.read(batch, batch.length);
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+        writer.join();
+
+        if (elapsed == 0) {
+            elapsed = 1;
+        }
+        return (long) ((double) messageCount / (double) elapsed * 1000000L);
+    }
+
+    private static double latency(PipeFactory factory, final long roundtripCount) throws Exception
+    {
+        final YPipeBase<Integer> ping = factory.create();
+        final YPipeBase<Integer> pong = factory.create();
+
+        Thread echo = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (long i = 0; i < roundtripCount; i++) {
+                    Integer item;
+                    while ((item = ping.read()) == null) {
+                        // spin
+                    }
+                    pong.write(item, false);
+                    pong.flush();
+                }
+            }
+        };
+        echo.start();
+
+        long watch = ZMQ.startStopwatch();
+        for (long i = 0; i < roundtripCount; i++) {
+            ping.write(ITEM, false);
+            ping.flush();
+            while (pong.read() == null) {
+                // spin
+            }
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+        echo.join();
+
+        return (double) elapsed / (roundtripCount * 2);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static long atol(String string)
+    {
+        return Long.valueOf(string);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Publishes to many subscribers over TCP and measures the CPU time the
+//  I/O thread spends per message delivered. The subscribers are plain
+//  channels speaking the unversioned protocol, drained by a single thread,
+//  so that the only ZeroMQ sockets around are the publisher's.
+public class PubFanThr
+{
+    private PubFanThr()
+    {
+    }
+
+    static class Drain implements Runnable
+    {
+        private final Selector selector;
+        private volatile long bytes;
+        private volatile boolean stopped;
+
+        Drain(Selector selector)
+        {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run()
+        {
+            ByteBuffer buf = ByteBuffer.allocateDirect(65536);
+            try {
+                while (!stopped) {
+                    selector.select(100);
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        int n;
+                        do {
+                            buf.clear();
+                            n = ((SocketChannel) key.channel()).read(buf);
+                            if (n > 0) {
+                                bytes += n;
+                            }
+                        } while (n == buf.capacity());
+                        if (n == -1) {
+                            key.cancel();
+                        }
+                    }
+                }
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 4) {
+            printf("usage: pub_fan_thr <port> <connection-count> <message-size> <message-count>");
+            return;
+        }
+        int port = atoi(argv [0]);
+        int connectionCount = atoi(argv [1]);
+        int messageSize = atoi(argv [2]);
+        int messageCount = atoi(argv [3]);
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_BACKLOG, connectionCount);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_LINGER, 0);
+        if (!ZMQ.bind(pub, "tcp://127.0.0.1:" + port)) {
+            printf("error in bind");
+            return;
+        }
+
+        //  Connect the subscribers. The publisher subscribes unversioned
+        //  peers to everything, so an empty identity is all they send.
+        Selector selector = Selector.open();
+        SocketChannel[] channels = new SocketChannel[connectionCount];
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        for (int i = 0; i < connectionCount; i++) {
+            channels[i] = SocketChannel.open(address);
+            channels[i].write(ByteBuffer.wrap(new byte[] {1, 0}));
+            channels[i].configureBlocking(false);
+            channels[i].register(selector, SelectionKey.OP_READ);
+        }
+        Drain drain = new Drain(selector);
+        Thread drainer = new Thread(drain, "drain");
+        drainer.start();
+
+        //  Let the handshakes complete.
+        long drained = waitDrained(drain);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long ioThread = ioThreadId();
+        long cpu = threads.getThreadCpuTime(ioThread);
+        long watch = ZMQ.startStopwatch();
+
+        Msg msg = new Msg(messageSize);
+        for (int i = 0; i < messageCount; i++) {
+            ZMQ.send(pub, new Msg(msg), 0);
+        }
+        drained = waitDrained(drain) - drained;
+
+        long elapsed = ZMQ.stopStopwatch(watch);
+        cpu = threads.getThreadCpuTime(ioThread) - cpu;
+
+        //  Messages this small are framed with two bytes.
+        long delivered = drained / (messageSize + 2);
+        printf("connections: %d", connectionCount);
+        printf("message size: %d [B]", messageSize);
+        printf("messages published: %d", messageCount);
+        printf("messages delivered: %d", delivered);
+        printf("elapsed: %.3f [s]", (double) elapsed / 1000000);
+        printf("I/O thread cpu: %.3f [s]", (double) cpu / 1000000000);
+        printf("I/O thread cpu: %.1f [ns/msg]", (double) cpu / Math.max(delivered, 1));
+
+        drain.stopped = true;
+        drainer.join();
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        selector.close();
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    //  Waits for the subscribers to receive nothing for a while.
+    private static long waitDrained(Drain drain) throws InterruptedException
+    {
+        long bytes = -1;
+        while (bytes != drain.bytes) {
+            bytes = drain.bytes;
+            Thread.sleep(500);
+        }
+        return bytes;
+    }
+
+    private static long ioThreadId()
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("iothread")) {
+                return thread.getId();
+            }
+        }
+        throw new IllegalStateException("no I/O thread");
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
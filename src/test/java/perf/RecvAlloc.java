@@ -0,0 +1,137 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.zeromq.ZMQ;
+
+//  Measures the memory allocated per message received with Socket.recv()
+//  over TCP, by the receiving application thread and I/O thread, with the
+//  message pool of the receiving context enabled or not.
+public class RecvAlloc
+{
+    private RecvAlloc()
+    {
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 4) {
+            printf("usage: recv_alloc <port> <message-size> <message-count> <pool-size>");
+            return;
+        }
+        int port = atoi(argv [0]);
+        int messageSize = atoi(argv [1]);
+        int messageCount = atoi(argv [2]);
+        int poolSize = atoi(argv [3]);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            printf("allocation counters not available");
+            return;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+
+        //  The receiving context starts its I/O thread first, so it is the
+        //  only one around when looking it up.
+        ZMQ.Context receiver = ZMQ.context(1);
+        receiver.setMsgPoolSize(poolSize);
+        ZMQ.Socket pull = receiver.socket(ZMQ.PULL);
+        pull.bind("tcp://127.0.0.1:" + port);
+
+        List<Long> ids = new ArrayList<Long>();
+        ids.add(Thread.currentThread().getId());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("iothread")) {
+                ids.add(thread.getId());
+            }
+        }
+        long[] tids = new long[ids.size()];
+        for (int i = 0; i < tids.length; i++) {
+            tids[i] = ids.get(i);
+        }
+
+        final int warmup = messageCount / 10;
+        final int total = warmup + messageCount;
+        final int size = messageSize;
+        final int sendTo = port;
+        Thread sender = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ZMQ.Context ctx = ZMQ.context(1);
+                ZMQ.Socket push = ctx.socket(ZMQ.PUSH);
+                push.connect("tcp://127.0.0.1:" + sendTo);
+                byte[] data = new byte[size];
+                for (int i = 0; i < total; i++) {
+                    push.send(data, 0);
+                }
+                push.close();
+                ctx.term();
+            }
+        });
+        sender.start();
+
+        for (int i = 0; i < warmup; i++) {
+            pull.recv();
+        }
+
+        long allocated = sum(counters.getThreadAllocatedBytes(tids));
+        long watch = zmq.ZMQ.startStopwatch();
+        for (int i = 0; i < messageCount; i++) {
+            pull.recv();
+        }
+        long elapsed = zmq.ZMQ.stopStopwatch(watch);
+        allocated = sum(counters.getThreadAllocatedBytes(tids)) - allocated;
+
+        printf("message size: %d [B]", messageSize);
+        printf("pool size: %d", poolSize);
+        printf("mean throughput: %d [msg/s]", (long) ((double) messageCount / Math.max(elapsed, 1) * 1000000L));
+        printf("allocated: %.1f [B/msg]", (double) allocated / messageCount);
+
+        sender.join();
+        pull.close();
+        receiver.term();
+    }
+
+    private static long sum(long[] values)
+    {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class RemoteLat
+{
+    private RemoteLat()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        String connectTo;
+        int roundtripCount;
+        int messageSize;
+        int busyPoll;
+        Ctx ctx;
+        SocketBase s;
+        boolean rc;
+        int n;
+        int i;
+        Msg msg;
+        long watch;
+        long elapsed;
+        double latency;
+
+        if (args.length != 3 && args.length != 4) {
+            printf("usage: remote_lat <connect-to> <message-size> "
+               + "<roundtrip-count> [<io-busy-poll-us>]\n");
+            return;
+        }
+        connectTo = args [0];
+        messageSize = atoi(args [1]);
+        roundtripCount = atoi(args [2]);
+        busyPoll = args.length == 4 ? atoi(args [3]) : 0;
+
+        ctx = ZMQ.init(1);
+        if (ctx == null) {
+            printf("error in init: %s\n");
+            return;
+        }
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL_US, busyPoll);
+
+        s = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+        if (s == null) {
+            printf("error in socket: %s\n");
+            return;
+        }
+
+        rc = ZMQ.connect(s, connectTo);
+        if (!rc) {
+            printf("error in connect: %s\n", ZMQ.strerror(s.errno()));
+            return;
+        }
+
+        msg = ZMQ.msgInitWithSize(messageSize);
+
+        watch = ZMQ.startStopwatch();
+
+        for (i = 0; i != roundtripCount; i++) {
+            n = ZMQ.sendMsg(s, msg, 0);
+            if (n < 0) {
+                printf("error in sendmsg: %s\n", ZMQ.strerror(s.errno()));
+                return;
+            }
+            msg = ZMQ.recvMsg(s, 0);
+            if (msg == null) {
+                printf("error in recvmsg: %s\n", ZMQ.strerror(s.errno()));
+                return;
+            }
+            if (ZMQ.msgSize(msg) != messageSize) {
+                printf("message of incorrect size received\n");
+                return;
+            }
+        }
+
+        elapsed = ZMQ.stopStopwatch(watch);
+
+        latency = (double) elapsed / (roundtripCount * 2);
+
+        printf("message size: %d [B]\n", messageSize);
+        printf("roundtrip count: %d\n", roundtripCount);
+        printf("average latency: %.3f [us]\n", latency);
+
+        ZMQ.close(s);
+
+        ZMQ.term(ctx);
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.parseInt(string);
+    }
+
+    private static void printf(String string)
+    {
+        System.out.println(string);
+    }
+
+    private static void printf(String string, Object ... args)
+    {
+        System.out.println(String.format(string, args));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Compares sending a file region with sendFile, which transfers it from
+//  the file to the socket in the I/O thread, against reading the region
+//  into a byte array and sending that.
+public class SendFileThr
+{
+    private SendFileThr()
+    {
+    }
+
+    public static void main(String[] argv) throws IOException
+    {
+        String connectTo;
+        int messageSize;
+        long messageCount;
+
+        if (argv.length != 3) {
+            printf("usage: sendfile_thr <connect-to> <message-size> <message-count>");
+            return;
+        }
+        connectTo = argv [0];
+        messageSize = atoi(argv [1]);
+        messageCount = atol(argv [2]);
+
+        File file = File.createTempFile("sendfile_thr", ".bin");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(messageSize);
+        raf.close();
+
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.bind(pull, connectTo);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.connect(push, connectTo);
+
+        printf("message size: %d [B]", messageSize);
+        printf("message count: %d", messageCount);
+        run(push, pull, file, messageSize, messageCount, false);
+        run(push, pull, file, messageSize, messageCount, true);
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+        file.delete();
+    }
+
+    private static void run(SocketBase push, SocketBase pull, File file,
+                            int messageSize, long messageCount, boolean sendFile)
+        throws IOException
+    {
+        long watch = ZMQ.startStopwatch();
+
+        for (long i = 0; i < messageCount; i++) {
+            FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+            if (sendFile) {
+                ZMQ.sendFile(push, channel, 0, messageSize, 0);
+            }
+            else {
+                byte[] data = new byte[messageSize];
+                ByteBuffer bb = ByteBuffer.wrap(data);
+                while (bb.hasRemaining() && channel.read(bb, bb.position()) >= 0) {
+                    continue;
+                }
+                channel.close();
+                ZMQ.send(push, data, data.length, 0);
+            }
+            Msg msg = ZMQ.recvMsg(pull, 0);
+            if (msg == null || msg.size() != messageSize) {
+                printf("error in recvmsg");
+                return;
+            }
+        }
+
+        long elapsed = ZMQ.stopStopwatch(watch);
+        if (elapsed == 0) {
+            elapsed = 1;
+        }
+        long throughput = (long) ((double) messageCount / (double) elapsed * 1000000L);
+        double megabytes = (double) throughput * messageSize / (1024 * 1024);
+
+        printf("%s: %d [msg/s], %.3f [MB/s]", sendFile ? "sendFile" : "byte[]",
+                throughput, megabytes);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+
+    private static long atol(String string)
+    {
+        return Long.valueOf(string);
+    }
+}
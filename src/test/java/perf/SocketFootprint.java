@@ -0,0 +1,96 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.io.File;
+
+import zmq.Ctx;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Measures the file descriptors and heap used per socket, first for
+//  plain sockets, then after asking each of them for its ZMQ_FD.
+public class SocketFootprint
+{
+    private SocketFootprint()
+    {
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 1) {
+            printf("usage: socket_footprint <socket-count>");
+            return;
+        }
+        int socketCount = atoi(argv [0]);
+
+        Ctx ctx = ZMQ.init(1);
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MAX_SOCKETS, socketCount + 1);
+        SocketBase[] sockets = new SocketBase[socketCount];
+
+        int fds = fdCount();
+        long heap = heapUsed();
+        for (int i = 0; i < socketCount; i++) {
+            sockets[i] = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        }
+        printf("socket count: %d", socketCount);
+        printf("plain: %.2f [fd/socket], %d [B/socket]",
+                (double) (fdCount() - fds) / socketCount, (heapUsed() - heap) / socketCount);
+
+        fds = fdCount();
+        heap = heapUsed();
+        for (SocketBase socket : sockets) {
+            ZMQ.getSocketOptionExt(socket, ZMQ.ZMQ_FD);
+        }
+        printf("with ZMQ_FD: +%.2f [fd/socket], +%d [B/socket]",
+                (double) (fdCount() - fds) / socketCount, (heapUsed() - heap) / socketCount);
+
+        for (SocketBase socket : sockets) {
+            ZMQ.close(socket);
+        }
+        ZMQ.term(ctx);
+    }
+
+    //  Open file descriptors of the process, -1 if they cannot be listed.
+    private static int fdCount()
+    {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds == null ? -1 : fds.length;
+    }
+
+    private static long heapUsed()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
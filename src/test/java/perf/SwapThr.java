@@ -0,0 +1,146 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Measures the throughput of a burst going over the high water mark,
+//  once spilled to disk and once queued in memory, as well as the rate
+//  at which the spilled messages are then delivered.
+public class SwapThr
+{
+    private SwapThr()
+    {
+    }
+
+    static class Receiver extends Thread
+    {
+        private final SocketBase s;
+        private final int messageCount;
+        private volatile boolean done;
+
+        Receiver(SocketBase s, int messageCount)
+        {
+            this.s = s;
+            this.messageCount = messageCount;
+        }
+
+        @Override
+        public void run()
+        {
+            for (int i = 0; i != messageCount; i++) {
+                Msg msg = ZMQ.recvMsg(s, 0);
+                if (msg == null) {
+                    printf("error in recvmsg: %s", s.errno());
+                    break;
+                }
+            }
+            done = true;
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 2) {
+            printf("usage: swap_thr <message-size> <message-count>");
+            return;
+        }
+        int messageSize = atoi(argv [0]);
+        int messageCount = atoi(argv [1]);
+
+        printf("message size: %d [B]", messageSize);
+        printf("message count: %d", messageCount);
+
+        run(messageSize, messageCount, true);
+        run(messageSize, messageCount, false);
+    }
+
+    private static void run(int messageSize, int messageCount, boolean swap)
+    {
+        Ctx ctx = ZMQ.init(1);
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        if (swap) {
+            ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 1000);
+            ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 1000);
+            ZMQ.setSocketOption(push, ZMQ.ZMQ_SWAP, 2L * (messageSize + 8) * messageCount);
+        }
+        else {
+            ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 0);
+            ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 0);
+        }
+        ZMQ.bind(pull, "inproc://swap_thr");
+        ZMQ.connect(push, "inproc://swap_thr");
+
+        byte[] data = new byte[messageSize];
+
+        //  Nobody reads during the burst, everything above the watermark
+        //  has to be put aside.
+        long watch = ZMQ.startStopwatch();
+        for (int i = 0; i != messageCount; i++) {
+            if (ZMQ.send(push, data, messageSize, ZMQ.ZMQ_DONTWAIT) < 0) {
+                printf("error in send: %d", push.errno());
+                return;
+            }
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+        report(swap ? "spill" : "memory", messageSize, messageCount, elapsed);
+
+        //  The writer moves spilled messages back into the pipe whenever it
+        //  processes its commands, so it keeps polling while the reader drains.
+        Receiver receiver = new Receiver(pull, messageCount);
+        watch = ZMQ.startStopwatch();
+        receiver.start();
+        while (!receiver.done) {
+            ZMQ.getSocketOption(push, ZMQ.ZMQ_EVENTS);
+            Thread.yield();
+        }
+        elapsed = ZMQ.stopStopwatch(watch);
+        report(swap ? "drain from disk" : "drain from memory", messageSize, messageCount, elapsed);
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    private static void report(String phase, int messageSize, int messageCount, long elapsed)
+    {
+        if (elapsed == 0) {
+            elapsed = 1;
+        }
+        long throughput = (long) ((double) messageCount / (double) elapsed * 1000000L);
+        double megabits = (double) (throughput * messageSize * 8) / 1000000;
+        printf("%s: %d [msg/s] %.3f [Mb/s]", phase, throughput, megabits);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
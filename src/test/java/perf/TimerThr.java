@@ -0,0 +1,173 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package perf;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import zmq.IPollEvents;
+import zmq.MultiMap;
+import zmq.TimerWheel;
+
+//  Measures adding, cancelling and executing timers with the timing wheel
+//  of the pollers, on a simulated clock. For comparison, the same is done
+//  with the sorted map they used before, where cancelling a timer means
+//  looking for it among all the others.
+public class TimerThr
+{
+    private TimerThr()
+    {
+    }
+
+    static class Sink implements IPollEvents
+    {
+        private int fired;
+
+        @Override
+        public void inEvent()
+        {
+        }
+
+        @Override
+        public void outEvent()
+        {
+        }
+
+        @Override
+        public void connectEvent()
+        {
+        }
+
+        @Override
+        public void acceptEvent()
+        {
+        }
+
+        @Override
+        public void timerEvent(int id)
+        {
+            fired++;
+        }
+    }
+
+    public static void main(String[] argv)
+    {
+        if (argv.length != 2) {
+            printf("usage: timer_thr <timer-count> <max-timeout>");
+            return;
+        }
+        int timerCount = atoi(argv [0]);
+        int maxTimeout = atoi(argv [1]);
+
+        printf("timer count: %d", timerCount);
+        printf("max timeout: %d [ms]", maxTimeout);
+
+        for (int round = 0; round < 3; round++) {
+            wheel(timerCount, maxTimeout);
+            sortedMap(timerCount, maxTimeout);
+        }
+    }
+
+    private static void wheel(int timerCount, int maxTimeout)
+    {
+        Random random = new Random(42);
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(0);
+        TimerWheel.Timer[] timers = new TimerWheel.Timer[timerCount];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < timerCount; i++) {
+            timers[i] = wheel.add(0, 1 + random.nextInt(maxTimeout), sink, i);
+        }
+        report("wheel add", timerCount, System.nanoTime() - start);
+
+        //  Half of the timers are cancelled, as reconnection timers are once
+        //  connected.
+        start = System.nanoTime();
+        for (int i = 0; i < timerCount; i += 2) {
+            wheel.cancel(timers[i]);
+        }
+        report("wheel cancel", timerCount / 2, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        long now = 0;
+        while (!wheel.isEmpty()) {
+            long timeout = wheel.execute(now);
+            now += timeout == 0 ? 1 : timeout;
+        }
+        report("wheel execute", sink.fired, System.nanoTime() - start);
+    }
+
+    private static void sortedMap(int timerCount, int maxTimeout)
+    {
+        Random random = new Random(42);
+        Sink sink = new Sink();
+        Map<Long, Object[]> timers = new MultiMap<Long, Object[]>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < timerCount; i++) {
+            timers.put((long) (1 + random.nextInt(maxTimeout)), new Object[] {sink, i});
+        }
+        report("sorted map add", timerCount, System.nanoTime() - start);
+
+        //  Cancelling is linear, a sample is enough.
+        int cancelCount = Math.min(timerCount / 2, 1000);
+        start = System.nanoTime();
+        for (int i = 0; i < 2 * cancelCount; i += 2) {
+            Iterator<Map.Entry<Long, Object[]>> it = timers.entrySet().iterator();
+            while (it.hasNext()) {
+                Object[] info = it.next().getValue();
+                if (info[0] == sink && (Integer) info[1] == i) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+        report("sorted map cancel", cancelCount, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        Iterator<Map.Entry<Long, Object[]>> it = timers.entrySet().iterator();
+        while (it.hasNext()) {
+            Object[] info = it.next().getValue();
+            ((Sink) info[0]).timerEvent((Integer) info[1]);
+            it.remove();
+        }
+        report("sorted map execute", sink.fired, System.nanoTime() - start);
+    }
+
+    private static void report(String phase, int count, long elapsed)
+    {
+        if (count == 0) {
+            count = 1;
+        }
+        printf("%s: %.1f [ns/timer]", phase, (double) elapsed / count);
+    }
+
+    private static void printf(String str, Object ... args)
+    {
+        System.out.println(String.format(str, args));
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.valueOf(string);
+    }
+}
@@ -107,6 +107,87 @@ public class TestDecoder
         assertThat(in.array()[199], is((byte) '9'));
     }
 
+    @Test
+    public void testReaderLongDirect()
+    {
+        decoder.setDirect(true);
+
+        ByteBuffer in = decoder.getBuffer();
+        int insize = readLongMessage1(in);
+
+        assertThat(insize, is(64));
+        in.flip();
+        int process = decoder.processBuffer(in, insize);
+        assertThat(process, is(64));
+
+        //  The rest of the message is read straight into its direct buffer.
+        in = decoder.getBuffer();
+        assertThat(in.isDirect(), is(true));
+        assertThat(in.position(), is(62));
+        assertThat(in.limit(), is(200));
+
+        insize = readLongMessage2(in);
+
+        assertThat(insize, is(200));
+        in.flip();
+        process = decoder.processBuffer(in, 138);
+        assertThat(process, is(138));
+
+        assertThat(session.out.size(), is(1));
+        Msg msg = session.out.get(0);
+        assertThat(msg.buf().isDirect(), is(true));
+        assertThat(msg.size(), is(200));
+        assertThat(msg.get(61), is((byte) '1'));
+        assertThat(msg.get(199), is((byte) '9'));
+    }
+
+    @Test
+    public void testReaderLongChunked()
+    {
+        decoder.setChunkSize(80);
+
+        ByteBuffer data = ByteBuffer.allocate(202);
+        readLongMessage1(data);
+        readLongMessage2(data);
+        data.flip();
+
+        while (data.hasRemaining()) {
+            ByteBuffer in = decoder.getBuffer();
+            int insize = Math.min(in.remaining(), data.remaining());
+            for (int i = 0; i < insize; i++) {
+                in.put(data.get());
+            }
+            in.flip();
+            int process = decoder.processBuffer(in, insize);
+            assertThat(process, is(insize));
+        }
+
+        assertThat(session.out.size(), is(3));
+        assertThat(session.out.get(0).size(), is(80));
+        assertThat(session.out.get(0).isChunk(), is(true));
+        assertThat(session.out.get(1).size(), is(80));
+        assertThat(session.out.get(1).isChunk(), is(true));
+        assertThat(session.out.get(2).size(), is(40));
+        assertThat(session.out.get(2).isChunk(), is(false));
+        assertThat(session.out.get(2).get(39), is((byte) '9'));
+    }
+
+    @Test
+    public void testReaderChunkedTooLong()
+    {
+        //  The maximum message size applies to the whole frame.
+        decoder = new Decoder(64, 100);
+        decoder.setMsgSink(session);
+        decoder.setChunkSize(80);
+
+        ByteBuffer in = decoder.getBuffer();
+        int insize = readLongMessage1(in);
+        in.flip();
+        int process = decoder.processBuffer(in, insize);
+        assertThat(process, is(-1));
+        assertThat(session.out.size(), is(0));
+    }
+
     @Test
     public void testReaderMultipleMsg()
     {
@@ -123,6 +204,80 @@ public class TestDecoder
         assertThat(session.out.size(), is(2));
     }
 
+    @Test
+    public void testReaderSlice()
+    {
+        MsgAllocator allocator = new MsgAllocator(4);
+        decoder.setMsgAllocator(allocator);
+        decoder.setSlice(true);
+
+        ByteBuffer in = decoder.getBuffer();
+        assertThat(in.isDirect(), is(true));
+        readShortMessage(in);
+        readShortMessage(in);
+        //  Beginning of a message that does not lie whole in the batch.
+        in.put((byte) 11);
+        in.put((byte) 0);
+        in.put("hello".getBytes(ZMQ.CHARSET));
+        in.flip();
+        int processed = decoder.processBuffer(in, 21);
+        assertThat(processed, is(21));
+
+        //  Both messages are slices of the batch.
+        assertThat(session.out.size(), is(2));
+        Msg first = session.out.get(0);
+        Msg second = session.out.get(1);
+        assertThat(first.parent(), is(in));
+        assertThat(second.parent(), is(in));
+        assertThat(first.array() == null, is(true));
+        assertThat(first.buf().isReadOnly(), is(true));
+        assertThat(new String(first.data(), ZMQ.CHARSET), is("hello"));
+        assertThat(new String(second.data(), ZMQ.CHARSET), is("hello"));
+
+        //  The batch is still in use, a new one is started.
+        ByteBuffer next = decoder.getBuffer();
+        assertThat(next == in, is(false));
+        next.put("world".getBytes(ZMQ.CHARSET));
+        next.flip();
+        processed = decoder.processBuffer(next, 5);
+        assertThat(processed, is(5));
+
+        //  The split message was copied out of both batches.
+        assertThat(session.out.size(), is(3));
+        Msg third = session.out.get(2);
+        assertThat(third.parent() == null, is(true));
+        assertThat(new String(third.data(), ZMQ.CHARSET), is("helloworld"));
+
+        //  The first batch goes back to the pool once its slices are released.
+        first.release();
+        assertThat(allocator.allocateBatch(64) == in, is(false));
+        second.release();
+        assertThat(allocator.allocateBatch(64) == in, is(true));
+
+        //  Without outstanding slices the current batch is reused.
+        assertThat(decoder.getBuffer() == next, is(true));
+    }
+
+    @Test
+    public void testReaderSliceWithoutPool()
+    {
+        decoder.setMsgAllocator(new MsgAllocator(0));
+        decoder.setSlice(true);
+
+        //  Without a pool the messages are copied out of the usual buffer.
+        ByteBuffer in = decoder.getBuffer();
+        readShortMessage(in);
+        in.flip();
+        int processed = decoder.processBuffer(in, 7);
+        assertThat(processed, is(7));
+
+        assertThat(session.out.size(), is(1));
+        Msg msg = session.out.get(0);
+        assertThat(msg.parent() == null, is(true));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("hello"));
+        assertThat(decoder.getBuffer() == in, is(true));
+    }
+
     static class CustomDecoder extends DecoderBase
     {
         private static final int READ_HEADER = 0;
@@ -123,6 +123,30 @@ public class TestEncoder
 
     }
 
+    @Test
+    public void testReaderLongDirect()
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(200);
+        for (int i = 0; i < 20; i++) {
+            buffer.put("0123456789".getBytes(ZMQ.CHARSET));
+        }
+        buffer.flip();
+        session.pushMsg(new Msg(buffer));
+
+        Transfer out = encoder.getData(null);
+        assertThat(out.remaining(), is(64));
+        assertThat(write(out), is(64));
+        assertThat(sock.data()[2], is((byte) '0'));
+        assertThat(sock.data()[63], is((byte) '1'));
+
+        //  The rest of the message is sent straight from its buffer.
+        out = encoder.getData(null);
+        assertThat(out.remaining(), is(138));
+        assertThat(write(out), is(64));
+        assertThat(sock.data()[0], is((byte) '2'));
+        assertThat(out.remaining(), is(74));
+    }
+
     static class CustomEncoder extends EncoderBase
     {
         public static final boolean RAW_ENCODER = true;
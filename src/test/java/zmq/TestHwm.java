@@ -84,4 +84,79 @@ public class TestHwm
         ZMQ.close(sb);
         ZMQ.term(ctx);
     }
+
+    @Test
+    public void testHwmBytes()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        //  Create pair of socket, each with high watermark of 1000 bytes.
+        //  Thus the total buffer space should be 2000 bytes.
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM_BYTES, 1000L);
+
+        boolean brc = ZMQ.bind(sb, "inproc://b");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM_BYTES, 1000L);
+
+        brc = ZMQ.connect(sc, "inproc://b");
+        assertThat(brc, is(true));
+
+        //  Try to send 30 messages of 100 bytes. Only 20 should succeed,
+        //  the message limit being far away.
+        byte[] data = new byte[100];
+        int rc;
+        for (int i = 0; i < 30; i++) {
+            rc = ZMQ.send(sc, data, data.length, ZMQ.ZMQ_DONTWAIT);
+            if (i < 20) {
+                assertThat(rc, is(100));
+            }
+            else {
+                assertThat(rc, is(-1));
+            }
+        }
+
+        //  Reading half of the bytes lets the writer go on.
+        Msg m;
+        for (int i = 0; i != 10; i++) {
+            m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(m.size(), is(100));
+        }
+        for (int i = 0; i < 10; i++) {
+            rc = ZMQ.send(sc, data, data.length, ZMQ.ZMQ_DONTWAIT);
+            assertThat(rc, is(100));
+        }
+        rc = ZMQ.send(sc, data, data.length, ZMQ.ZMQ_DONTWAIT);
+        assertThat(rc, is(-1));
+
+        for (int i = 0; i != 20; i++) {
+            m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+        }
+
+        //  The limit is only checked between messages, so a multi-part
+        //  message larger than the limit goes through as a whole.
+        byte[] large = new byte[3000];
+        rc = ZMQ.send(sc, large, large.length, ZMQ.ZMQ_SNDMORE | ZMQ.ZMQ_DONTWAIT);
+        assertThat(rc, is(3000));
+        rc = ZMQ.send(sc, data, data.length, ZMQ.ZMQ_DONTWAIT);
+        assertThat(rc, is(100));
+        rc = ZMQ.send(sc, data, data.length, ZMQ.ZMQ_DONTWAIT);
+        assertThat(rc, is(-1));
+
+        m = ZMQ.recv(sb, 0);
+        assertThat(m.size(), is(3000));
+        m = ZMQ.recv(sb, 0);
+        assertThat(m.size(), is(100));
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
 }
@@ -0,0 +1,140 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestMigration
+{
+    private static void send(SocketBase push, int from, int count)
+    {
+        for (int i = from; i < from + count; i++) {
+            int rc = ZMQ.send(push, Integer.toString(i), 0);
+            assertThat(rc >= 0, is(true));
+        }
+    }
+
+    private static void recv(SocketBase pull, int from, int count)
+    {
+        for (int i = from; i < from + count; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(Integer.toString(i)));
+        }
+    }
+
+    @Test
+    public void testMigrate()
+    {
+        Ctx ctx = ZMQ.init(2);
+        assertThat(ctx, notNullValue());
+
+        //  Both ends of the connection start in the first I/O thread.
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_AFFINITY, 1L);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:6589");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_AFFINITY, 1L);
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:6589");
+        assertThat(rc, is(true));
+
+        IOThread first = ctx.chooseIoThread(1L);
+        IOThread second = ctx.chooseIoThread(2L);
+        assertThat(first != second, is(true));
+
+        send(push, 0, 1000);
+        recv(pull, 0, 1000);
+        assertThat(second.getPoller().getBytes(), is(0L));
+
+        //  Messages in flight while the connection moves back and forth
+        //  are neither lost nor reordered.
+        for (int round = 0; round < 10; round++) {
+            int from = 1000 * (round + 1);
+            send(push, from, 500);
+            assertThat(push.migrate(round % 2 == 0 ? second : first), is(1));
+            assertThat(pull.migrate(round % 3 == 0 ? second : first), is(1));
+            send(push, from + 500, 500);
+            recv(pull, from, 1000);
+        }
+        assertThat(second.getPoller().getBytes() > 0, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testRebalanceIdle() throws Exception
+    {
+        Ctx ctx = ZMQ.init(2);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:6589");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:6589");
+        assertThat(rc, is(true));
+
+        send(push, 0, 100);
+        recv(pull, 0, 100);
+
+        //  Idle threads have no load to share. Their utilization is not
+        //  known for sure before they have been idle a whole window.
+        Thread.sleep(3 * Config.IO_LOAD_WINDOW.getValue());
+        assertThat(ZMQ.rebalance(push), is(false));
+        assertThat(ZMQ.rebalance(pull), is(false));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSessionRate() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        SessionBase session = new SessionBase(ctx.chooseIoThread(0), false, push, new Options(), null);
+
+        //  The rate is only known once a whole window has passed.
+        int window = Config.IO_LOAD_WINDOW.getValue();
+        session.countBytes(1000);
+        assertThat(session.rate(), is(0L));
+
+        //  At most the bytes of the window over its duration.
+        Thread.sleep(window);
+        session.countBytes(1000);
+        long rate = session.rate();
+        assertThat(rate > 0 && rate <= 2000 * 1000 / window, is(true));
+
+        //  Then falls back once the session goes quiet.
+        Thread.sleep(2 * window);
+        assertThat(session.rate(), is(0L));
+
+        ZMQ.close(push);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestMpscPipe
+{
+    static class Item extends MpscPipe.Node
+    {
+    }
+
+    @Test
+    public void testSleep()
+    {
+        MpscPipe<Item> p = new MpscPipe<Item>();
+        Item a = new Item();
+        Item b = new Item();
+        Item c = new Item();
+
+        //  The reader is awake until it finds the pipe empty.
+        assertThat(p.write(a), is(true));
+        assertThat(p.read(), is(a));
+        assertThat(p.read(), nullValue());
+
+        //  Only the first write after that has to wake it up.
+        assertThat(p.write(b), is(false));
+        assertThat(p.write(c), is(true));
+        assertThat(p.read(), is(b));
+        assertThat(p.read(), is(c));
+        assertThat(p.read(), nullValue());
+
+        //  Items can be written again once read.
+        assertThat(p.write(a), is(false));
+        assertThat(p.write(b), is(true));
+        assertThat(p.read(), is(a));
+        assertThat(p.write(a), is(true));
+        assertThat(p.read(), is(b));
+        assertThat(p.read(), is(a));
+        assertThat(p.read(), nullValue());
+    }
+
+    @Test
+    public void testReusableCommand() throws Exception
+    {
+        Mailbox mailbox = new Mailbox("test");
+        Command cmd = new Command(null, Command.Type.ACTIVATE_WRITE, new AtomicLongArray(2), true);
+
+        //  Posted once while pending, with the latest argument.
+        assertThat(cmd.post(), is(true));
+        mailbox.send(cmd);
+        ((AtomicLongArray) cmd.arg).set(0, 2);
+        assertThat(cmd.post(), is(false));
+        Command received = mailbox.recv(0);
+        assertThat(received, is(cmd));
+        received.received();
+        assertThat(((AtomicLongArray) received.arg).get(0), is(2L));
+        assertThat(mailbox.recv(0), nullValue());
+
+        //  Posted again once received.
+        assertThat(cmd.post(), is(true));
+        mailbox.send(cmd);
+        assertThat(mailbox.recv(0), is(cmd));
+        mailbox.close();
+    }
+
+    @Test
+    public void testMailbox() throws Exception
+    {
+        final Mailbox mailbox = new Mailbox("test");
+        final int producers = 16;
+        final int count = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < producers; i++) {
+            final int producer = i;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < count; j++) {
+                        mailbox.send(new Command(null, Command.Type.DONE, new int[] {producer, j}));
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+
+        //  Every command gets through, in order for each producer.
+        int[] next = new int[producers];
+        for (int i = 0; i < producers * count; i++) {
+            Command cmd = mailbox.recv(-1);
+            assertThat(cmd, notNullValue());
+            int[] arg = (int[]) cmd.arg;
+            assertThat(arg[1], is(next[arg[0]]++));
+        }
+        assertThat(mailbox.recv(0), nullValue());
+        mailbox.close();
+    }
+}
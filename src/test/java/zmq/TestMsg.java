@@ -22,6 +22,11 @@ package zmq;
 import org.junit.Test;
 import java.nio.ByteBuffer;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
 public class TestMsg
 {
     @Test(expected = IllegalArgumentException.class)
@@ -50,4 +55,41 @@ public class TestMsg
         buffer.flip();
         new Msg(buffer);
     }
+
+    @Test
+    public void testShareKeepsPayload()
+    {
+        Msg msg = new Msg("payload".getBytes(ZMQ.CHARSET));
+        msg.setFlags(Msg.MORE);
+        msg.setTimeToLive(100);
+        Msg shared = msg.share();
+
+        assertThat(shared.array(), sameInstance(msg.array()));
+        assertThat(shared.size(), is(7));
+        assertThat(shared.hasMore(), is(true));
+        assertThat(shared.getTimeToLive(), is(100));
+        assertThat(shared.isShared(), is(true));
+        assertThat(msg.isShared(), is(true));
+
+        //  Flags are per message.
+        shared.resetFlags(Msg.MORE);
+        assertThat(msg.hasMore(), is(true));
+    }
+
+    @Test
+    public void testSharedPooledPayloadIsReleasedOnce()
+    {
+        MsgAllocator allocator = new MsgAllocator(4);
+        Msg msg = allocator.allocate(10);
+        byte[] array = msg.array();
+        Msg first = msg.share();
+        Msg second = msg.share();
+
+        msg.release();
+        first.release();
+        assertThat(allocator.allocate(10).array(), not(sameInstance(array)));
+
+        second.release();
+        assertThat(allocator.allocate(10).array(), sameInstance(array));
+    }
 }
@@ -0,0 +1,276 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestMsgAllocator
+{
+    @Test
+    public void testDisabledPool()
+    {
+        MsgAllocator allocator = new MsgAllocator(0);
+        Msg msg = allocator.allocate(100);
+        assertThat(msg.size(), is(100));
+        assertThat(msg.array().length, is(100));
+        assertThat(msg.data(), sameInstance(msg.array()));
+    }
+
+    @Test
+    public void testSizeClasses()
+    {
+        MsgAllocator allocator = new MsgAllocator(16);
+        assertThat(allocator.allocate(1).array().length, is(64));
+        assertThat(allocator.allocate(64).array().length, is(64));
+        assertThat(allocator.allocate(65).array().length, is(128));
+        assertThat(allocator.allocate(1000).array().length, is(1024));
+        assertThat(allocator.allocate(65536).array().length, is(65536));
+        assertThat(allocator.allocate(65537).array().length, is(65537));
+        assertThat(allocator.allocate(0).array().length, is(0));
+    }
+
+    @Test
+    public void testReuse()
+    {
+        MsgAllocator allocator = new MsgAllocator(1);
+        Msg first = allocator.allocate(100);
+        Msg second = allocator.allocate(100);
+        byte[] array = first.array();
+
+        first.release();
+        assertThat(first.array(), nullValue());
+        assertThat(first.size(), is(0));
+
+        //  Pool is full, second buffer is dropped.
+        second.release();
+
+        Msg msg = allocator.allocate(120);
+        assertThat(msg.array(), sameInstance(array));
+        assertThat(msg.size(), is(120));
+        assertThat(msg.buf().remaining(), is(120));
+        assertThat(allocator.allocate(120).array(), not(sameInstance(array)));
+    }
+
+    @Test
+    public void testRecycle()
+    {
+        MsgAllocator allocator = new MsgAllocator(1);
+        Msg first = allocator.allocate(100);
+        first.put((byte) 1).put((byte) 2);
+        first.setFlags(Msg.MORE);
+        byte[] array = first.array();
+
+        //  The whole message is handed out again, reset.
+        first.recycle();
+        Msg msg = allocator.allocate(80);
+        assertThat(msg, sameInstance(first));
+        assertThat(msg.array(), sameInstance(array));
+        assertThat(msg.size(), is(80));
+        assertThat(msg.hasMore(), is(false));
+        assertThat(msg.buf().position(), is(0));
+        assertThat(msg.buf().remaining(), is(80));
+
+        //  Shared messages are only released.
+        Msg shared = msg.share();
+        msg.recycle();
+        assertThat(allocator.allocate(80), not(sameInstance(msg)));
+        shared.release();
+        assertThat(allocator.allocate(80).array(), sameInstance(array));
+    }
+
+    @Test
+    public void testPooledDataIsCopied()
+    {
+        MsgAllocator allocator = new MsgAllocator(1);
+        Msg msg = allocator.allocate(3);
+        msg.put((byte) 1).put((byte) 2).put((byte) 3);
+
+        byte[] data = msg.data();
+        assertThat(data.length, is(3));
+        assertThat(data, not(sameInstance(msg.array())));
+        assertThat(data[2], is((byte) 3));
+
+        Msg copy = new Msg(msg);
+        msg.release();
+        assertThat(copy.size(), is(3));
+        assertThat(copy.buf().get(1), is((byte) 2));
+    }
+
+    @Test
+    public void testDetach()
+    {
+        MsgAllocator allocator = new MsgAllocator(1);
+        Msg msg = allocator.allocate(64);
+        msg.put((byte) 1).put((byte) 2);
+
+        //  The payload is copied out, the message goes back as a whole.
+        byte[] data = msg.detach();
+        assertThat(data.length, is(64));
+        assertThat(data[1], is((byte) 2));
+        assertThat(allocator.allocate(64), sameInstance(msg));
+
+        //  Plain messages hand their own array over.
+        Msg plain = new Msg(new byte[] {1, 2, 3});
+        byte[] array = plain.array();
+        assertThat(plain.detach(), sameInstance(array));
+    }
+
+    @Test
+    public void testPooledTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MSG_POOL_SIZE, 64);
+        assertThat(ctx.get(ZMQ.ZMQ_MSG_POOL_SIZE), is(64));
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sb, notNullValue());
+        boolean brc = ZMQ.bind(sb, "tcp://127.0.0.1:6580");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sc, notNullValue());
+        brc = ZMQ.connect(sc, "tcp://127.0.0.1:6580");
+        assertThat(brc, is(true));
+
+        for (int i = 0; i < 100; i++) {
+            String content = "message " + i;
+            int rc = ZMQ.send(sc, content, 0);
+            assertThat(rc, is(content.length()));
+
+            Msg msg = ZMQ.recv(sb, 0);
+            assertThat(msg, notNullValue());
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(content));
+            ZMQ.msgClose(msg);
+        }
+
+        ZMQ.close(sb);
+        ZMQ.close(sc);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testRecvIntoBuffer()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MSG_POOL_SIZE, 64);
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sb, notNullValue());
+        boolean brc = ZMQ.bind(sb, "tcp://127.0.0.1:6584");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(sc, notNullValue());
+        brc = ZMQ.connect(sc, "tcp://127.0.0.1:6584");
+        assertThat(brc, is(true));
+
+        byte[] buffer = new byte[64];
+        ByteBuffer bb = ByteBuffer.allocateDirect(64);
+        for (int i = 0; i < 100; i++) {
+            String content = "message " + i;
+            int rc = ZMQ.send(sc, content, 0);
+            assertThat(rc, is(content.length()));
+            rc = ZMQ.send(sc, content, 0);
+            assertThat(rc, is(content.length()));
+
+            rc = sb.recv(buffer, 1, buffer.length - 1, 0);
+            assertThat(rc, is(content.length()));
+            assertThat(new String(buffer, 1, rc, ZMQ.CHARSET), is(content));
+
+            bb.clear();
+            rc = sb.recv(bb, 0);
+            assertThat(rc, is(content.length()));
+            bb.flip();
+            byte[] data = new byte[bb.remaining()];
+            bb.get(data);
+            assertThat(new String(data, ZMQ.CHARSET), is(content));
+        }
+
+        //  Messages that do not fit are truncated.
+        ZMQ.send(sc, "message", 0);
+        int rc = sb.recv(buffer, 0, 3, 0);
+        assertThat(rc, is(3));
+        assertThat(new String(buffer, 0, 3, ZMQ.CHARSET), is("mes"));
+
+        ZMQ.close(sb);
+        ZMQ.close(sc);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSliceRecvTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_MSG_POOL_SIZE, 64);
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_SLICE_RECV, 1);
+        assertThat(sb.getSocketOpt(ZMQ.ZMQ_SLICE_RECV), is(1));
+        boolean brc = ZMQ.bind(sb, "tcp://127.0.0.1:6585");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        brc = ZMQ.connect(sc, "tcp://127.0.0.1:6585");
+        assertThat(brc, is(true));
+
+        for (int i = 0; i < 1000; i++) {
+            String content = "tick " + i;
+            int rc = ZMQ.send(sc, content, ZMQ.ZMQ_DONTWAIT);
+            assertThat(rc, is(content.length()));
+        }
+
+        //  Keep some messages around while receiving the others, so that
+        //  batches are both reused and replaced.
+        Msg[] kept = new Msg[10];
+        for (int i = 0; i < 1000; i++) {
+            Msg msg = ZMQ.recv(sb, 0);
+            assertThat(msg, notNullValue());
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("tick " + i));
+            if (i % 100 == 0) {
+                kept[i / 100] = msg;
+            }
+            else {
+                ZMQ.msgClose(msg);
+            }
+        }
+        for (int i = 0; i < kept.length; i++) {
+            assertThat(new String(kept[i].data(), ZMQ.CHARSET), is("tick " + i * 100));
+            ZMQ.msgClose(kept[i]);
+        }
+
+        ZMQ.close(sb);
+        ZMQ.close(sc);
+        ZMQ.term(ctx);
+    }
+}
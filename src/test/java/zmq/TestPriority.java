@@ -0,0 +1,262 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestPriority
+{
+    @Test
+    public void testBypassBacklog()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 0);
+        boolean rc = ZMQ.bind(push, "inproc://prio");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 0);
+        rc = ZMQ.connect(pull, "inproc://prio");
+        assertThat(rc, is(true));
+
+        int backlog = 50000;
+        for (int i = 0; i < backlog; i++) {
+            ZMQ.send(push, "update" + i, 0);
+        }
+
+        //  The urgent message comes out first, regardless of the backlog.
+        long watch = ZMQ.startStopwatch();
+        ZMQ.send(push, "cancel", ZMQ.ZMQ_SNDPRIO);
+        Msg msg = ZMQ.recv(pull, 0);
+        long urgent = ZMQ.stopStopwatch(watch);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("cancel"));
+
+        watch = ZMQ.startStopwatch();
+        for (int i = 0; i < backlog; i++) {
+            msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("update" + i));
+        }
+        long drain = ZMQ.stopStopwatch(watch);
+        assertThat(urgent < drain, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testMultipart()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        boolean rc = ZMQ.bind(push, "inproc://prio-multipart");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://prio-multipart");
+        assertThat(rc, is(true));
+
+        ZMQ.send(push, "a1", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(push, "a2", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(push, "a3", 0);
+
+        //  The lane is chosen by the first part.
+        ZMQ.send(push, "b1", ZMQ.ZMQ_SNDMORE | ZMQ.ZMQ_SNDPRIO);
+        ZMQ.send(push, "b2", 0);
+
+        String[] expected = {"b1", "b2", "a1", "a2", "a3"};
+        for (int i = 0; i < expected.length; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(expected[i]));
+            assertThat(msg.hasMore(), is(i != 1 && i != 4));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testHwm()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        boolean rc = ZMQ.bind(push, "inproc://prio-hwm");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        rc = ZMQ.connect(pull, "inproc://prio-hwm");
+        assertThat(rc, is(true));
+
+        //  Priority messages count towards the watermark like any other.
+        int count = 0;
+        while (ZMQ.send(push, "msg", count % 2 == 0 ? ZMQ.ZMQ_DONTWAIT : ZMQ.ZMQ_DONTWAIT | ZMQ.ZMQ_SNDPRIO) >= 0) {
+            count++;
+        }
+        assertThat(count, is(20));
+
+        for (int i = 0; i < count; i++) {
+            assertThat(ZMQ.recv(pull, 0), notNullValue());
+        }
+        assertThat(ZMQ.recv(pull, ZMQ.ZMQ_DONTWAIT), is((Msg) null));
+
+        //  Once read, both lanes free room again.
+        assertThat(ZMQ.send(push, "msg", ZMQ.ZMQ_DONTWAIT | ZMQ.ZMQ_SNDPRIO) >= 0, is(true));
+        assertThat(ZMQ.send(push, "msg", ZMQ.ZMQ_DONTWAIT) >= 0, is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testReadAhead()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        boolean rc = ZMQ.bind(push, "inproc://prio-read-ahead");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://prio-read-ahead");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "update" + i, 0);
+        }
+
+        //  Receiving the first message reads the others ahead.
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("update0"));
+
+        //  The urgent message still goes before them, as a whole.
+        ZMQ.send(push, "cancel1", ZMQ.ZMQ_SNDMORE | ZMQ.ZMQ_SNDPRIO);
+        ZMQ.send(push, "cancel2", 0);
+        msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("cancel1"));
+        assertThat(msg.hasMore(), is(true));
+        msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("cancel2"));
+        assertThat(msg.hasMore(), is(false));
+
+        for (int i = 1; i < 10; i++) {
+            msg = ZMQ.recv(pull, 0);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("update" + i));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSwap()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 5);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SWAP, 1L << 20);
+        boolean rc = ZMQ.bind(push, "inproc://prio-swap");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 5);
+        rc = ZMQ.connect(pull, "inproc://prio-swap");
+        assertThat(rc, is(true));
+
+        //  Well above the watermark, the backlog spills to disk.
+        for (int i = 0; i < 100; i++) {
+            assertThat(ZMQ.send(push, "update" + i, ZMQ.ZMQ_DONTWAIT), is(6 + String.valueOf(i).length()));
+        }
+
+        //  The urgent message is not spilled behind it.
+        ZMQ.send(push, "cancel", ZMQ.ZMQ_SNDPRIO);
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("cancel"));
+
+        for (int i = 0; i < 100; i++) {
+            msg = recv(pull, push);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("update" + i));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 0);
+        boolean rc = ZMQ.bind(push, "tcp://127.0.0.1:6587");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "tcp://127.0.0.1:6587");
+        assertThat(rc, is(true));
+
+        //  More than the network and the receiving pipe can hold, so that
+        //  the backlog builds up on the sending side.
+        int backlog = 5000;
+        byte[] data = new byte[10000];
+        for (int i = 0; i < backlog; i++) {
+            ZMQ.send(push, data, data.length, 0);
+        }
+        ZMQ.send(push, "cancel", ZMQ.ZMQ_SNDPRIO);
+
+        int position = 0;
+        while (ZMQ.recv(pull, 0).size() == data.length) {
+            position++;
+        }
+        assertThat(position < backlog, is(true));
+
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LINGER, 0);
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    //  Messages spilled to disk are moved back into the pipe by the writer,
+    //  which has to process commands for that.
+    private static Msg recv(SocketBase reader, SocketBase writer)
+    {
+        Msg msg;
+        while ((msg = ZMQ.recv(reader, ZMQ.ZMQ_DONTWAIT)) == null) {
+            ZMQ.getSocketOption(writer, ZMQ.ZMQ_EVENTS);
+            Thread.yield();
+        }
+        return msg;
+    }
+}
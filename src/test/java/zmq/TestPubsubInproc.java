@@ -0,0 +1,74 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestPubsubInproc
+{
+    @Test
+    public void testFanOutSharesPayload()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        assertThat(pub, notNullValue());
+        boolean rc = ZMQ.bind(pub, "inproc://fanout");
+        assertThat(rc, is(true));
+
+        SocketBase[] subs = new SocketBase[20];
+        for (int i = 0; i < subs.length; i++) {
+            subs[i] = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+            assertThat(subs[i], notNullValue());
+            subs[i].setSocketOpt(ZMQ.ZMQ_SUBSCRIBE, "");
+            rc = ZMQ.connect(subs[i], "inproc://fanout");
+            assertThat(rc, is(true));
+        }
+
+        //  Let the publisher process the subscriptions.
+        pub.getSocketOpt(ZMQ.ZMQ_EVENTS);
+
+        Msg msg = new Msg("news".getBytes(ZMQ.CHARSET));
+        rc = pub.send(msg, 0);
+        assertThat(rc, is(true));
+
+        for (SocketBase sub : subs) {
+            Msg received = sub.recv(0);
+            assertThat(received, notNullValue());
+            //  A plain message is not reference counted, the very same one
+            //  is queued for every subscriber.
+            assertThat(received, sameInstance(msg));
+            assertThat(received.array(), sameInstance(msg.array()));
+            assertThat(new String(received.data(), ZMQ.CHARSET), is("news"));
+        }
+
+        for (SocketBase sub : subs) {
+            ZMQ.close(sub);
+        }
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+}
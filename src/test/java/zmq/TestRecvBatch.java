@@ -0,0 +1,118 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestRecvBatch
+{
+    @Test
+    public void testRecvBatch() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://recv-batch");
+        assertThat(rc, is(true));
+        SocketBase push1 = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push1, "inproc://recv-batch");
+        assertThat(rc, is(true));
+        SocketBase push2 = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push2, "inproc://recv-batch");
+        assertThat(rc, is(true));
+
+        //  Nothing is there yet.
+        Msg[] out = new Msg[16];
+        int count = ZMQ.recvBatch(pull, out, out.length, ZMQ.ZMQ_DONTWAIT);
+        assertThat(count, is(-1));
+        assertThat(pull.errno(), is(ZError.EAGAIN));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push1, "a" + i, 0);
+            ZMQ.send(push2, "b" + i, 0);
+        }
+
+        //  Everything available comes in batches of at most max messages,
+        //  in order for each sender.
+        int a = 0;
+        int b = 0;
+        while (a + b < 20) {
+            count = ZMQ.recvBatch(pull, out, 8, 0);
+            assertThat(count > 0 && count <= 8, is(true));
+            for (int i = 0; i < count; i++) {
+                String s = new String(out[i].data(), ZMQ.CHARSET);
+                if (s.startsWith("a")) {
+                    assertThat(s, is("a" + a++));
+                }
+                else {
+                    assertThat(s, is("b" + b++));
+                }
+            }
+        }
+
+        ZMQ.close(push1);
+        ZMQ.close(push2);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testRecvBatchBytes()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://recv-batch-bytes");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://recv-batch-bytes");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "m" + i, 0);
+        }
+
+        //  Bad arguments are rejected before any message is taken.
+        byte[][] out = new byte[4][];
+        assertThat(pull.recvBatch(out, 5, 0), is(-1));
+        assertThat(pull.errno(), is(ZError.EINVAL));
+        assertThat(pull.recvBatch(out, 0, 0), is(-1));
+        assertThat(pull.errno(), is(ZError.EINVAL));
+
+        int received = 0;
+        while (received < 10) {
+            int count = pull.recvBatch(out, out.length, 0);
+            assertThat(count > 0 && count <= out.length, is(true));
+            for (int i = 0; i < count; i++) {
+                assertThat(new String(out[i], ZMQ.CHARSET), is("m" + received++));
+            }
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
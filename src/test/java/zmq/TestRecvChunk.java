@@ -0,0 +1,95 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestRecvChunk
+{
+    @Test
+    public void testPullChunks()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVCHUNK, 4096);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_MAXMSGSIZE, 20000L);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:6581");
+        assertThat(rc, is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:6581");
+        assertThat(rc, is(true));
+
+        byte[] large = new byte[10000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        int size = ZMQ.send(push, large, large.length, ZMQ.ZMQ_SNDMORE);
+        assertThat(size, is(10000));
+        size = ZMQ.send(push, "end", 0);
+        assertThat(size, is(3));
+
+        int[] chunks = {4096, 4096, 1808};
+        int offset = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg, notNullValue());
+            assertThat(msg.size(), is(chunks[i]));
+            assertThat(msg.get(0), is((byte) offset));
+            offset += msg.size();
+
+            boolean last = i == chunks.length - 1;
+            assertThat(pull.getSocketOpt(ZMQ.ZMQ_RCVCHUNKMORE), is(last ? 0 : 1));
+            assertThat(pull.getSocketOpt(ZMQ.ZMQ_RCVMORE), is(last ? 1 : 0));
+        }
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("end"));
+        assertThat(pull.getSocketOpt(ZMQ.ZMQ_RCVCHUNKMORE), is(0));
+        assertThat(pull.getSocketOpt(ZMQ.ZMQ_RCVMORE), is(0));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedSocketType()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        try {
+            ZMQ.setSocketOption(sub, ZMQ.ZMQ_RCVCHUNK, 4096);
+        }
+        finally {
+            ZMQ.close(sub);
+            ZMQ.term(ctx);
+        }
+    }
+}
@@ -48,4 +48,33 @@ public class TestReqrepTcp
         ZMQ.close(sb);
         ZMQ.term(ctx);
     }
+
+    @Test
+    public void testReqrepTcpBusyPoll() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+        assertThat(ctx.set(ZMQ.ZMQ_IO_BUSY_POLL_US, -1), is(false));
+        ZMQ.setContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL_US, 100);
+        assertThat(ZMQ.getContextOption(ctx, ZMQ.ZMQ_IO_BUSY_POLL_US), is(100));
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        assertThat(sb, notNullValue());
+        boolean rc = ZMQ.bind(sb, "tcp://127.0.0.1:6590");
+        assertThat(rc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+        assertThat(sc, notNullValue());
+        rc = ZMQ.connect(sc, "tcp://127.0.0.1:6590");
+        assertThat(rc, is(true));
+
+        //  Traffic after the I/O thread went back to blocking is handled too.
+        Helper.bounce(sb, sc);
+        ZMQ.sleep(1);
+        Helper.bounce(sb, sc);
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
 }
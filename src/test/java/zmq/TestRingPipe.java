@@ -0,0 +1,124 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestRingPipe
+{
+    @Test
+    public void testReadWrite()
+    {
+        RingPipe<Integer> p = new RingPipe<Integer>(3);
+        Integer[] out = new Integer[8];
+
+        //  Incomplete items are neither flushed nor read.
+        p.write(0, false);
+        p.write(1, true);
+        boolean rc = p.flush();
+        assertThat(rc, is(true));
+        assertThat(p.read(), is(0));
+        assertThat(p.read(), nullValue());
+
+        //  The reader went asleep, the next flush has to wake it up.
+        p.write(2, false);
+        rc = p.flush();
+        assertThat(rc, is(false));
+        assertThat(p.probe(), is(1));
+        assertThat(p.read(out, out.length), is(2));
+        assertThat(out[0], is(1));
+        assertThat(out[1], is(2));
+
+        //  Wrap around the ring a few times.
+        for (int i = 0; i < 10; i++) {
+            p.write(i, false);
+            p.write(i + 100, false);
+            p.flush();
+            assertThat(p.read(), is(i));
+            assertThat(p.read(), is(i + 100));
+        }
+    }
+
+    @Test
+    public void testGrow()
+    {
+        RingPipe<Integer> p = new RingPipe<Integer>(4);
+
+        //  A message longer than the ring makes it grow.
+        p.write(0, false);
+        p.flush();
+        assertThat(p.read(), is(0));
+        for (int i = 1; i < 20; i++) {
+            p.write(i, true);
+        }
+
+        //  Rolling back past the link drops the new ring again.
+        for (int i = 19; i > 2; i--) {
+            assertThat(p.unwrite(), is(i));
+        }
+        for (int i = 3; i < 40; i++) {
+            p.write(i, i < 39);
+        }
+        p.flush();
+        for (int i = 1; i < 40; i++) {
+            assertThat(p.read(), is(i));
+        }
+        assertThat(p.unwrite(), nullValue());
+        assertThat(p.read(), nullValue());
+    }
+
+    @Test
+    public void testThreads() throws Exception
+    {
+        final RingPipe<Integer> p = new RingPipe<Integer>(16);
+        final int count = 1000000;
+
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < count; i++) {
+                    p.write(i, i % 7 != 0);
+                    if (i % 7 == 0) {
+                        p.flush();
+                    }
+                }
+                p.write(count, false);
+                p.flush();
+            }
+        };
+        writer.start();
+
+        int expected = 0;
+        Integer[] out = new Integer[10];
+        while (expected <= count) {
+            int n = p.read(out, out.length);
+            for (int i = 0; i < n; i++) {
+                assertThat(out[i], is(expected++));
+            }
+        }
+        writer.join();
+    }
+}
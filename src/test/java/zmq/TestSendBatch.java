@@ -0,0 +1,153 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestSendBatch
+{
+    @Test
+    public void testBatch()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://batch");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://batch");
+        assertThat(rc, is(true));
+
+        //  Ten single part messages and a two part one at the end.
+        Msg[] msgs = new Msg[12];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = new Msg(new byte[] {(byte) i});
+        }
+        msgs[10].setFlags(Msg.MORE);
+
+        int sent = ZMQ.sendBatch(push, msgs, msgs.length, 0);
+        assertThat(sent, is(12));
+
+        for (int i = 0; i < msgs.length; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.data()[0], is((byte) i));
+            assertThat(msg.hasMore(), is(i == 10));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testBatchPriority() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://batch-prio");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://batch-prio");
+        assertThat(rc, is(true));
+
+        ZMQ.send(push, "backlog", 0);
+
+        //  The batch takes the priority lane, as single messages do.
+        Msg[] msgs = new Msg[3];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = new Msg(new byte[] {(byte) i});
+        }
+        int sent = ZMQ.sendBatch(push, msgs, msgs.length, ZMQ.ZMQ_SNDPRIO);
+        assertThat(sent, is(3));
+
+        for (int i = 0; i < msgs.length; i++) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.data()[0], is((byte) i));
+        }
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("backlog"));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testBatchAboveHwm() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        final SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        boolean rc = ZMQ.bind(pull, "inproc://batch-hwm");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        rc = ZMQ.connect(push, "inproc://batch-hwm");
+        assertThat(rc, is(true));
+
+        Msg[] msgs = new Msg[100];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = new Msg(new byte[] {(byte) i});
+        }
+
+        //  Without a reader only the messages below the watermark go.
+        int sent = ZMQ.sendBatch(push, msgs, msgs.length, ZMQ.ZMQ_DONTWAIT);
+        assertThat(sent > 0 && sent < msgs.length, is(true));
+
+        final int[] received = new int[1];
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < 100; i++) {
+                    Msg msg = ZMQ.recv(pull, 0);
+                    if (msg.data()[0] == (byte) i) {
+                        received[0]++;
+                    }
+                }
+            }
+        };
+        reader.start();
+
+        //  A blocking batch waits for room and delivers everything in order.
+        Msg[] left = Arrays.copyOfRange(msgs, sent, msgs.length);
+        int rest = ZMQ.sendBatch(push, left, left.length, 0);
+        assertThat(rest, is(msgs.length - sent));
+
+        reader.join();
+        assertThat(received[0], is(sent + rest));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
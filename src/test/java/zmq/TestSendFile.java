@@ -0,0 +1,288 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestSendFile
+{
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        content = new byte[1024 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        file = File.createTempFile("zmq-sendfile", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    private FileChannel open() throws IOException
+    {
+        return new RandomAccessFile(file, "r").getChannel();
+    }
+
+    //  The I/O thread closes the channel right after writing the last
+    //  bytes, which may be just after the peer has received them.
+    private boolean closed(FileChannel channel) throws InterruptedException
+    {
+        for (int i = 0; i < 100 && channel.isOpen(); i++) {
+            Thread.sleep(10);
+        }
+        return !channel.isOpen();
+    }
+
+    @Test
+    public void testSendFileTcp() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:6582");
+        assertThat(rc, is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:6582");
+        assertThat(rc, is(true));
+
+        //  Small region in the middle of the file, followed by the whole
+        //  file and a plain frame, all in one multi-part message.
+        FileChannel small = open();
+        int size = ZMQ.sendFile(push, small, 1000, 100, ZMQ.ZMQ_SNDMORE);
+        assertThat(size, is(100));
+        FileChannel whole = open();
+        size = ZMQ.sendFile(push, whole, 0, content.length, ZMQ.ZMQ_SNDMORE);
+        assertThat(size, is(content.length));
+        size = ZMQ.send(push, "end", 0);
+        assertThat(size, is(3));
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(msg.hasMore(), is(true));
+        assertThat(msg.data(), is(Arrays.copyOfRange(content, 1000, 1100)));
+
+        msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(msg.hasMore(), is(true));
+        assertThat(msg.data(), is(content));
+
+        msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(msg.hasMore(), is(false));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("end"));
+
+        //  Both channels are closed once their region has been sent.
+        assertThat(closed(small), is(true));
+        assertThat(closed(whole), is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSendFileInproc() throws IOException
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://sendfile");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://sendfile");
+        assertThat(rc, is(true));
+
+        //  Without an engine in between the region reaches the receiver as
+        //  it is, and is read from the file on demand.
+        FileChannel channel = open();
+        int size = ZMQ.sendFile(push, channel, 10, 20, 0);
+        assertThat(size, is(20));
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(msg.size(), is(20));
+        assertThat(msg.data(), is(Arrays.copyOfRange(content, 10, 30)));
+        assertThat(channel.isOpen(), is(true));
+
+        msg.release();
+        assertThat(channel.isOpen(), is(false));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testEmptyRegion() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:6583");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "tcp://127.0.0.1:6583");
+        assertThat(rc, is(true));
+
+        FileChannel channel = open();
+        int size = ZMQ.sendFile(push, channel, 0, 0, 0);
+        assertThat(size, is(0));
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+        assertThat(msg.size(), is(0));
+        assertThat(closed(channel), is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSendFileAtHwm() throws IOException
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 1);
+        boolean rc = ZMQ.bind(pull, "inproc://sendfile-hwm");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 1);
+        rc = ZMQ.connect(push, "inproc://sendfile-hwm");
+        assertThat(rc, is(true));
+
+        //  Fill the pipe up to the high water mark.
+        int sent = 0;
+        while (ZMQ.send(push, "x", ZMQ.ZMQ_DONTWAIT) == 1) {
+            sent++;
+        }
+        assertThat(sent > 0, is(true));
+
+        //  The socket keeps ownership of the channel when the send fails.
+        FileChannel channel = open();
+        int size = ZMQ.sendFile(push, channel, 0, 100, ZMQ.ZMQ_DONTWAIT);
+        assertThat(size, is(-1));
+        assertThat(push.errno(), is(ZError.EAGAIN));
+        assertThat(channel.isOpen(), is(false));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSendFileDropped() throws IOException
+    {
+        Ctx ctx = ZMQ.init(1);
+
+        //  No subscriber, the message is dropped by the distributor.
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        FileChannel channel = open();
+        int size = ZMQ.sendFile(pub, channel, 0, 100, 0);
+        assertThat(size, is(100));
+        assertThat(channel.isOpen(), is(false));
+
+        //  Unknown peer, the message is dropped by the router.
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        size = ZMQ.send(router, "unknown", ZMQ.ZMQ_SNDMORE);
+        assertThat(size, is(7));
+        channel = open();
+        size = ZMQ.sendFile(router, channel, 0, 100, 0);
+        assertThat(size, is(100));
+        assertThat(channel.isOpen(), is(false));
+
+        ZMQ.close(router);
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSendFilePipeTerminated() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LINGER, 0);
+        boolean rc = ZMQ.bind(push, "inproc://sendfile-term");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://sendfile-term");
+        assertThat(rc, is(true));
+
+        //  The region is still queued in the pipe when the receiver goes
+        //  away; it is released as the pipe is torn down.
+        FileChannel channel = open();
+        int size = ZMQ.sendFile(push, channel, 0, 100, 0);
+        assertThat(size, is(100));
+        assertThat(channel.isOpen(), is(true));
+
+        ZMQ.close(pull);
+        ZMQ.close(push);
+        ZMQ.term(ctx);
+
+        assertThat(closed(channel), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionTooLarge() throws IOException
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        FileChannel channel = open();
+        try {
+            ZMQ.sendFile(push, channel, 0, Integer.MAX_VALUE + 1L, 0);
+        }
+        finally {
+            channel.close();
+            ZMQ.close(push);
+            ZMQ.term(ctx);
+        }
+    }
+}
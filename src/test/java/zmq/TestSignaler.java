@@ -0,0 +1,110 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TestSignaler
+{
+    @Test
+    public void testParked() throws Exception
+    {
+        final Signaler signaler = new Signaler();
+
+        //  Nothing to wait for, the wait times out.
+        assertThat(signaler.waitEvent(0), is(false));
+        assertThat(signaler.waitEvent(10), is(false));
+
+        //  A signal from another thread wakes the waiting one up.
+        Thread sender = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e) {
+                }
+                signaler.send();
+            }
+        };
+        sender.start();
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+        sender.join();
+        assertThat(signaler.waitEvent(0), is(false));
+
+        signaler.close();
+    }
+
+    @Test
+    public void testLazyFd() throws Exception
+    {
+        Signaler signaler = new Signaler();
+
+        //  The signal sent before the fd exists is readable from it.
+        signaler.send();
+        Selector selector = Selector.open();
+        signaler.getFd().register(selector, SelectionKey.OP_READ);
+        assertThat(selector.selectNow(), is(1));
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+
+        //  Once received, the fd is not readable anymore.
+        selector.selectedKeys().clear();
+        assertThat(selector.selectNow(), is(0));
+
+        //  Signals after the fd exists are readable too.
+        signaler.send();
+        assertThat(selector.selectNow(), is(1));
+        signaler.recv();
+
+        selector.close();
+        signaler.close();
+    }
+
+    @Test
+    public void testCloseWakesUp() throws Exception
+    {
+        final Signaler signaler = new Signaler();
+        final boolean[] rc = new boolean[] {true};
+
+        Thread waiter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                rc[0] = signaler.waitEvent(-1);
+            }
+        };
+        waiter.start();
+        Thread.sleep(50);
+        signaler.close();
+        waiter.join();
+        assertThat(rc[0], is(false));
+    }
+}
@@ -0,0 +1,242 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestSwap
+{
+    @Test
+    public void testReadWrite()
+    {
+        Swap swap = new Swap(1L << 30);
+        assertThat(swap.isEmpty(), is(true));
+
+        //  Large enough to go over several segments.
+        int size = Config.SWAP_SEGMENT.getValue() / 3;
+        for (int i = 0; i < 10; i++) {
+            Msg msg = new Msg(size + i);
+            msg.put((byte) i);
+            if (i % 2 == 0) {
+                msg.setFlags(Msg.MORE);
+            }
+            swap.write(msg);
+        }
+        assertThat(swap.isEmpty(), is(false));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(swap.hasMsg(), is(true));
+            Msg msg = swap.read();
+            assertThat(msg.size(), is(size + i));
+            assertThat(msg.data()[0], is((byte) i));
+            assertThat(msg.hasMore(), is(i % 2 == 0));
+        }
+        assertThat(swap.hasMsg(), is(false));
+        assertThat(swap.isEmpty(), is(true));
+        swap.close();
+    }
+
+    @Test
+    public void testReuseSegments()
+    {
+        Swap swap = new Swap(1L << 30);
+
+        //  Segments read are written again rather than mapped anew.
+        int size = Config.SWAP_SEGMENT.getValue() / 3;
+        int mapped = 0;
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                swap.write(new Msg(size));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertThat(swap.read().size(), is(size));
+            }
+            if (round == 0) {
+                mapped = swap.mapped();
+                assertThat(mapped > 1, is(true));
+            }
+        }
+        assertThat(swap.mapped(), is(mapped));
+        swap.close();
+    }
+
+    @Test
+    public void testRollback()
+    {
+        Swap swap = new Swap(1L << 30);
+
+        swap.write(new Msg("done".getBytes(ZMQ.CHARSET)));
+
+        //  The parts of an unfinished message are dropped, even across
+        //  segments.
+        int size = Config.SWAP_SEGMENT.getValue() / 2;
+        for (int i = 0; i < 3; i++) {
+            Msg msg = new Msg(size);
+            msg.setFlags(Msg.MORE);
+            swap.write(msg);
+        }
+        swap.rollback();
+
+        swap.write(new Msg("next".getBytes(ZMQ.CHARSET)));
+
+        assertThat(new String(swap.read().data(), ZMQ.CHARSET), is("done"));
+        assertThat(new String(swap.read().data(), ZMQ.CHARSET), is("next"));
+        assertThat(swap.isEmpty(), is(true));
+        swap.close();
+    }
+
+    @Test
+    public void testQuota()
+    {
+        Swap swap = new Swap(100);
+        swap.write(new Msg(50));
+        assertThat(swap.hasRoom(), is(true));
+        swap.write(new Msg(50));
+        assertThat(swap.hasRoom(), is(false));
+        swap.read();
+        assertThat(swap.hasRoom(), is(true));
+        swap.close();
+    }
+
+    @Test
+    public void testPushSpills()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SWAP, 100000L);
+        boolean rc = ZMQ.bind(push, "inproc://swap");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        rc = ZMQ.connect(pull, "inproc://swap");
+        assertThat(rc, is(true));
+
+        //  Far more than the watermarks allow, without blocking.
+        int count = 0;
+        while (ZMQ.send(push, "msg" + count, ZMQ.ZMQ_DONTWAIT) >= 0) {
+            count++;
+        }
+        assertThat(push.errno(), is(ZError.EAGAIN));
+        assertThat(count > 1000, is(true));
+
+        for (int i = 0; i < count; i++) {
+            Msg msg = recv(pull, push);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("msg" + i));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testMultipartSpilledWhileDrained() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SWAP, 1L << 20);
+        boolean rc = ZMQ.bind(push, "inproc://swap-multipart");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        rc = ZMQ.connect(pull, "inproc://swap-multipart");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 20; i++) {
+            ZMQ.send(push, "msg" + i, 0);
+        }
+
+        //  The first part goes to disk, then the reader drains the pipe
+        //  before the message is complete.
+        ZMQ.send(push, "part1", ZMQ.ZMQ_SNDMORE);
+        for (int i = 0; i < 20; i++) {
+            Msg msg = recv(pull, push);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("msg" + i));
+        }
+
+        //  Completing it brings it back from disk.
+        ZMQ.send(push, "part2", 0);
+        ZMQ.send(push, "after", 0);
+        String[] expected = {"part1", "part2", "after"};
+        for (String part : expected) {
+            Msg msg = recv(pull, push);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(part));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testPubSpills() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pub = ZMQ.socket(ctx, ZMQ.ZMQ_PUB);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_SNDHWM, 10);
+        ZMQ.setSocketOption(pub, ZMQ.ZMQ_SWAP, 1L << 20);
+        boolean rc = ZMQ.bind(pub, "tcp://127.0.0.1:6586");
+        assertThat(rc, is(true));
+        SocketBase sub = ZMQ.socket(ctx, ZMQ.ZMQ_SUB);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_RCVHWM, 10);
+        ZMQ.setSocketOption(sub, ZMQ.ZMQ_SUBSCRIBE, "");
+        rc = ZMQ.connect(sub, "tcp://127.0.0.1:6586");
+        assertThat(rc, is(true));
+        ZMQ.sleep(1);
+
+        //  Without the swap most of these would be dropped.
+        for (int i = 0; i < 5000; i++) {
+            ZMQ.send(pub, "msg" + i, 0);
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            Msg msg = recv(sub, pub);
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is("msg" + i));
+        }
+
+        ZMQ.close(sub);
+        ZMQ.close(pub);
+        ZMQ.term(ctx);
+    }
+
+    //  Spilled messages are moved back into the pipe when the writer
+    //  processes its commands, so the writer has to be kept busy.
+    private static Msg recv(SocketBase reader, SocketBase writer)
+    {
+        Msg msg;
+        while ((msg = ZMQ.recv(reader, ZMQ.ZMQ_DONTWAIT)) == null) {
+            ZMQ.getSocketOption(writer, ZMQ.ZMQ_EVENTS);
+            Thread.yield();
+        }
+        return msg;
+    }
+}
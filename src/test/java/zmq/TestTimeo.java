@@ -103,4 +103,52 @@ public class TestTimeo
         ZMQ.close(sb);
         ZMQ.term(ctx);
     }
+
+    @Test
+    public void testBusyPoll() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_BUSY_POLL_US, 1000);
+        assertThat((Integer) ZMQ.getSocketOptionExt(sb, ZMQ.ZMQ_BUSY_POLL_US), is(1000));
+        boolean rc = ZMQ.bind(sb, "inproc://busy_poll_test");
+        assertThat(rc, is(true));
+
+        //  Spinning does not distort the timeout.
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVTIMEO, 500);
+        long watch = ZMQ.startStopwatch();
+        Msg msg = ZMQ.recv(sb, 0);
+        assertThat(msg, nullValue());
+        long elapsed = ZMQ.stopStopwatch(watch);
+        assertThat(elapsed > 440000 && elapsed < 550000, is(true));
+
+        //  Nor does spinning for longer than the timeout.
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_BUSY_POLL_US, 300000);
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVTIMEO, 100);
+        watch = ZMQ.startStopwatch();
+        msg = ZMQ.recv(sb, 0);
+        assertThat(msg, nullValue());
+        elapsed = ZMQ.stopStopwatch(watch);
+        assertThat(elapsed > 90000 && elapsed < 250000, is(true));
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_BUSY_POLL_US, 1000);
+
+        //  Messages arriving while spinning or after it are received.
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        rc = ZMQ.connect(sc, "inproc://busy_poll_test");
+        assertThat(rc, is(true));
+        for (int i = 0; i < 10; i++) {
+            int r = ZMQ.send(sc, new Msg(new byte[] {(byte) i}), 0);
+            assertThat(r, is(1));
+            msg = ZMQ.recv(sb, 0);
+            assertThat(msg.data()[0], is((byte) i));
+        }
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
 }
@@ -0,0 +1,203 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+
+public class TestTimerWheel
+{
+    //  Records when each timer expired, as the time given to execute.
+    private static class Sink implements IPollEvents
+    {
+        private final List<String> fired = new ArrayList<String>();
+        private long now;
+
+        @Override
+        public void inEvent()
+        {
+        }
+
+        @Override
+        public void outEvent()
+        {
+        }
+
+        @Override
+        public void connectEvent()
+        {
+        }
+
+        @Override
+        public void acceptEvent()
+        {
+        }
+
+        @Override
+        public void timerEvent(int id)
+        {
+            fired.add(id + "@" + now);
+        }
+    }
+
+    private static long run(TimerWheel wheel, Sink sink, long now)
+    {
+        sink.now = now;
+        return wheel.execute(now);
+    }
+
+    @Test
+    public void testOrder()
+    {
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(1000);
+        wheel.add(1000, 30, sink, 3);
+        wheel.add(1000, 10, sink, 1);
+        wheel.add(1000, 20, sink, 2);
+        assertThat(wheel.size(), is(3));
+
+        assertThat(run(wheel, sink, 1000), is(10L));
+        assertThat(run(wheel, sink, 1015), is(5L));
+        assertThat(run(wheel, sink, 1030), is(0L));
+        assertThat(sink.fired.toString(), is("[1@1015, 2@1030, 3@1030]"));
+        assertThat(wheel.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testCancel()
+    {
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(0);
+        TimerWheel.Timer first = wheel.add(0, 10, sink, 1);
+        TimerWheel.Timer second = wheel.add(0, 10, sink, 2);
+        TimerWheel.Timer far = wheel.add(0, 100000, sink, 3);
+
+        wheel.cancel(second);
+        wheel.cancel(far);
+        assertThat(second.isPending(), is(false));
+        assertThat(wheel.size(), is(1));
+
+        run(wheel, sink, 200000);
+        assertThat(sink.fired.toString(), is("[1@200000]"));
+        assertThat(first.isPending(), is(false));
+
+        //  Cancelling an expired timer does nothing.
+        wheel.cancel(first);
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void testLevels()
+    {
+        //  Timeouts reaching each of the wheels, and beyond the highest.
+        long[] timeouts = {1, 255, 256, 300, 65535, 65536, 70000, 16777216, 20000000, 5000000000L};
+        long start = 123456789;
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(start);
+        for (int i = 0; i < timeouts.length; i++) {
+            wheel.add(start, timeouts[i], sink, i);
+        }
+
+        //  Following the timeouts returned, every timer expires on time.
+        long now = start;
+        while (!wheel.isEmpty()) {
+            long timeout = run(wheel, sink, now);
+            now += timeout == 0 ? 1 : timeout;
+        }
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < timeouts.length; i++) {
+            expected.add(i + "@" + (start + timeouts[i]));
+        }
+        assertThat(sink.fired, is(expected));
+    }
+
+    @Test
+    public void testUpperWheelBeforeLowest()
+    {
+        //  Due at 400, the first timer waits in the wheel above until 256.
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(100);
+        wheel.add(100, 300, sink, 1);
+        run(wheel, sink, 200);
+
+        //  The wait stops at the boundary rather than at the later timer
+        //  of the lowest wheel.
+        wheel.add(200, 250, sink, 2);
+        long timeout = run(wheel, sink, 200);
+        assertThat(timeout, is(56L));
+
+        long now = 200;
+        while (!wheel.isEmpty()) {
+            now += timeout;
+            timeout = run(wheel, sink, now);
+        }
+        assertThat(sink.fired.toString(), is("[1@400, 2@450]"));
+    }
+
+    @Test
+    public void testLate()
+    {
+        //  Timers are executed even if the wheel is looked at late.
+        Random random = new Random(42);
+        Sink sink = new Sink();
+        TimerWheel wheel = new TimerWheel(0);
+        for (int i = 0; i < 1000; i++) {
+            wheel.add(0, random.nextInt(1000000), sink, i);
+        }
+        long now = 0;
+        while (!wheel.isEmpty()) {
+            now += random.nextInt(10000);
+            int before = sink.fired.size();
+            run(wheel, sink, now);
+            for (int i = before; i < sink.fired.size(); i++) {
+                assertThat(sink.fired.get(i).endsWith("@" + now), is(true));
+            }
+        }
+        assertThat(sink.fired.size(), is(1000));
+    }
+
+    @Test
+    public void testAddWhileExecuting()
+    {
+        final TimerWheel wheel = new TimerWheel(0);
+        final Sink sink = new Sink();
+        Sink again = new Sink()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                super.timerEvent(id);
+
+                //  Already due, it expires in the same go.
+                wheel.add(sink.now - 5, 0, sink, 2);
+            }
+        };
+        wheel.add(0, 10, again, 1);
+        run(wheel, sink, 10);
+        assertThat(sink.fired.toString(), is("[2@10]"));
+        assertThat(wheel.isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class TestTtl
+{
+    @Test
+    public void testSocketTtl() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDTTL, 50);
+        assertThat(ZMQ.getSocketOption(push, ZMQ.ZMQ_SNDTTL), is(50));
+        boolean rc = ZMQ.bind(push, "inproc://ttl");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://ttl");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "stale" + i, 0);
+        }
+        ZMQ.sleep(1);
+        ZMQ.send(push, "fresh", 0);
+
+        //  Only the message sent after the others expired is delivered.
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("fresh"));
+        msg = ZMQ.recv(pull, ZMQ.ZMQ_DONTWAIT);
+        assertThat(msg, nullValue());
+        assertThat((Long) pull.getsockoptx(ZMQ.ZMQ_EXPIRED), is(10L));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testMessageTtl() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        boolean rc = ZMQ.bind(push, "inproc://ttl-msg");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://ttl-msg");
+        assertThat(rc, is(true));
+
+        //  A per message time to live overrides the socket default of none.
+        Msg stale = new Msg("stale".getBytes(ZMQ.CHARSET));
+        stale.setTimeToLive(50);
+        ZMQ.send(push, stale, 0);
+        ZMQ.send(push, "kept", 0);
+        ZMQ.sleep(1);
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("kept"));
+        assertThat((Long) pull.getsockoptx(ZMQ.ZMQ_EXPIRED), is(1L));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testMultipart() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDTTL, 50);
+        boolean rc = ZMQ.bind(push, "inproc://ttl-multipart");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pull, "inproc://ttl-multipart");
+        assertThat(rc, is(true));
+
+        ZMQ.send(push, "a1", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(push, "a2", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(push, "a3", 0);
+        ZMQ.sleep(1);
+        ZMQ.send(push, "b1", ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(push, "b2", 0);
+
+        //  The expired message is dropped as a whole, never part of it.
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("b1"));
+        assertThat(msg.hasMore(), is(true));
+        msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("b2"));
+        assertThat(msg.hasMore(), is(false));
+        assertThat((Long) pull.getsockoptx(ZMQ.ZMQ_EXPIRED), is(1L));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testReconnect() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        //  Messages queued for a peer that is not there yet are not written
+        //  to the wire once it shows up late.
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDTTL, 500);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LINGER, 0);
+        boolean rc = ZMQ.connect(push, "tcp://127.0.0.1:6588");
+        assertThat(rc, is(true));
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "stale" + i, 0);
+        }
+        ZMQ.sleep(1);
+
+        //  The peer reconnects well within the time to live of the next one.
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.bind(pull, "tcp://127.0.0.1:6588");
+        assertThat(rc, is(true));
+        ZMQ.send(push, "fresh", 0);
+
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("fresh"));
+        assertThat((Long) push.getsockoptx(ZMQ.ZMQ_EXPIRED), is(10L));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TestWatermark
+{
+    private static class Recorder implements IWatermarkListener
+    {
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void highWatermark(Object peer, long queued)
+        {
+            events.add("high " + queued);
+        }
+
+        @Override
+        public void lowWatermark(Object peer, long queued)
+        {
+            events.add("low " + queued);
+        }
+    }
+
+    @Test
+    public void testThresholds()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        Recorder recorder = new Recorder();
+        ZMQ.setWatermarkListener(push, recorder, 15, 5);
+        boolean rc = ZMQ.bind(push, "inproc://watermark");
+        assertThat(rc, is(true));
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        rc = ZMQ.connect(pull, "inproc://watermark");
+        assertThat(rc, is(true));
+
+        int sent = 0;
+        while (ZMQ.send(push, "msg", ZMQ.ZMQ_DONTWAIT) >= 0) {
+            sent++;
+        }
+        assertThat(sent, is(20));
+        assertThat(recorder.events.toString(), is("[high 15]"));
+
+        //  The low threshold is noticed once the peer reports its progress.
+        for (int i = 0; i < 20; i++) {
+            assertThat(ZMQ.recv(pull, 0), notNullValue());
+        }
+        ZMQ.getSocketOption(push, ZMQ.ZMQ_EVENTS);
+        assertThat(recorder.events.toString(), is("[high 15, low 0]"));
+
+        //  Once removed, the listener is not called anymore.
+        ZMQ.setWatermarkListener(push, null, 0, 0);
+        for (int i = 0; i < 20; i++) {
+            ZMQ.send(push, "msg", ZMQ.ZMQ_DONTWAIT);
+        }
+        assertThat(recorder.events.size(), is(2));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testPerPeer()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        boolean rc = ZMQ.bind(push, "inproc://watermark-peers");
+        assertThat(rc, is(true));
+        SocketBase pullA = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pullA, "inproc://watermark-peers");
+        assertThat(rc, is(true));
+        SocketBase pullB = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.connect(pullB, "inproc://watermark-peers");
+        assertThat(rc, is(true));
+
+        //  Pipes attached before the listener is set are notified as well.
+        final List<Object> peers = new ArrayList<Object>();
+        ZMQ.setWatermarkListener(push, new IWatermarkListener()
+        {
+            @Override
+            public void highWatermark(Object peer, long queued)
+            {
+                peers.add(peer);
+            }
+
+            @Override
+            public void lowWatermark(Object peer, long queued)
+            {
+            }
+        }, 5, 0);
+
+        for (int i = 0; i < 10; i++) {
+            ZMQ.send(push, "msg", 0);
+        }
+        assertThat(peers.size(), is(2));
+        assertThat(peers.get(0) != peers.get(1), is(true));
+
+        ZMQ.close(push);
+        ZMQ.close(pullA);
+        ZMQ.close(pullB);
+        ZMQ.term(ctx);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThresholds()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        try {
+            ZMQ.setWatermarkListener(push, new Recorder(), 5, 5);
+        }
+        finally {
+            ZMQ.close(push);
+            ZMQ.term(ctx);
+        }
+    }
+}
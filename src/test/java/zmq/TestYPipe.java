@@ -0,0 +1,61 @@
+/*
+    Copyright (c) 2007-2014 Contributors as noted in the AUTHORS file
+
+    This file is part of 0MQ.
+
+    0MQ is free software; you can redistribute it and/or modify it under
+    the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    0MQ is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package zmq;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestYPipe
+{
+    @Test
+    public void testReadBatch()
+    {
+        YPipe<Integer> p = new YPipe<Integer>(4);
+        Integer[] out = new Integer[3];
+
+        //  Nothing is read before being flushed.
+        for (int i = 0; i < 5; i++) {
+            p.write(i, false);
+        }
+        assertThat(p.read(out, out.length), is(0));
+
+        //  Flushed items are read across chunks, at most max at a time.
+        boolean rc = p.flush();
+        assertThat(rc, is(false));
+        p.write(5, false);
+        assertThat(p.read(out, out.length), is(3));
+        assertThat(out[0], is(0));
+        assertThat(out[2], is(2));
+        assertThat(p.read(out, out.length), is(2));
+        assertThat(out[0], is(3));
+        assertThat(out[1], is(4));
+        assertThat(p.read(out, out.length), is(0));
+
+        //  The reader went asleep, the next flush has to wake it up.
+        rc = p.flush();
+        assertThat(rc, is(false));
+        assertThat(p.read(out, out.length), is(1));
+        assertThat(out[0], is(5));
+        assertThat(p.read(), nullValue());
+    }
+}
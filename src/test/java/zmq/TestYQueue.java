@@ -60,4 +60,44 @@ public class TestYQueue
         assertThat(p.backPos(), is(0));
 
     }
+
+    @Test
+    public void testGrowAndRelease()
+    {
+        YQueue<Integer> p = new YQueue<Integer>(64);
+
+        //  Chunks of 16, 32 and 64 elements get allocated in turn.
+        for (int i = 0; i < 16; i++) {
+            p.push(i);
+        }
+        assertThat(p.backPos(), is(16));
+        for (int i = 16; i < 48; i++) {
+            p.push(i);
+        }
+        assertThat(p.backPos(), is(48));
+        for (int i = 48; i < 112; i++) {
+            p.push(i);
+        }
+        assertThat(p.backPos(), is(112));
+
+        //  Once read, chunks are kept for reuse as long as the queue is busy.
+        for (int i = 0; i < 112; i++) {
+            assertThat(p.pop(), is(i));
+        }
+        p.releaseSpares(Clock.nowMS(), 60000);
+        for (int i = 112; i < 176; i++) {
+            p.push(i);
+        }
+        assertThat(p.backPos(), is(0));
+
+        //  After a quiet period they are released, sizes start small again.
+        for (int i = 112; i < 176; i++) {
+            assertThat(p.pop(), is(i));
+        }
+        p.releaseSpares(Clock.nowMS() + 60000, 60000);
+        for (int i = 176; i < 192; i++) {
+            p.push(i);
+        }
+        assertThat(p.backPos(), is(176));
+    }
 }